@@ -0,0 +1,115 @@
+package com.viettel.sync.app;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * Biểu thức cron 5 trường chuẩn: phút giờ ngày tháng thứ (VD: "0,30 * * * *", "0 7-19 * * 1-5").
+ * Mỗi trường hỗ trợ *, số, khoảng a-b, bước (a-b/n hoặc dạng sao/n) và danh sách phân cách bằng dấu phẩy.
+ * Thứ: 0 hoặc 7 = Chủ nhật. Khi cả ngày và thứ đều bị giới hạn, khớp 1 trong 2 (như cron Unix).
+ */
+public final class CronSchedule {
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean domRestricted;
+    private final boolean dowRestricted;
+
+    private CronSchedule(String expression, String[] f) {
+        this.expression = expression;
+        this.minutes = parseField(f[0], 0, 59);
+        this.hours = parseField(f[1], 0, 23);
+        this.daysOfMonth = parseField(f[2], 1, 31);
+        this.months = parseField(f[3], 1, 12);
+        BitSet dow = parseField(f[4], 0, 7);
+        if (dow.get(7)) dow.set(0);
+        this.daysOfWeek = dow;
+        this.domRestricted = !f[2].equals("*");
+        this.dowRestricted = !f[4].equals("*");
+    }
+
+    public static CronSchedule parse(String expression) {
+        String[] f = expression.trim().split("\\s+");
+        if (f.length != 5) {
+            throw new IllegalArgumentException("Biểu thức cron cần đúng 5 trường: " + expression);
+        }
+        return new CronSchedule(expression.trim(), f);
+    }
+
+    /**
+     * Thời điểm khớp gần nhất, sau {@code after} (chính xác tới phút)
+     */
+    public ZonedDateTime next(ZonedDateTime after) {
+        ZonedDateTime t = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        // Giới hạn tìm kiếm ~5 năm (đủ cho cả ngày 29/2)
+        ZonedDateTime limit = t.plusYears(5);
+        while (t.isBefore(limit)) {
+            if (!months.get(t.getMonthValue())) {
+                t = t.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+                continue;
+            }
+            if (!dayMatches(t)) {
+                t = t.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+                continue;
+            }
+            if (!hours.get(t.getHour())) {
+                t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                continue;
+            }
+            if (!minutes.get(t.getMinute())) {
+                t = t.plusMinutes(1);
+                continue;
+            }
+            return t;
+        }
+        throw new IllegalStateException("Biểu thức cron không bao giờ khớp: " + expression);
+    }
+
+    private boolean dayMatches(ZonedDateTime t) {
+        boolean dom = daysOfMonth.get(t.getDayOfMonth());
+        boolean dow = daysOfWeek.get(t.getDayOfWeek().getValue() % 7);
+        if (domRestricted && dowRestricted) return dom || dow;
+        return dom && dow;
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet bits = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            String range = part;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = Integer.parseInt(part.substring(slash + 1));
+                range = part.substring(0, slash);
+                if (step <= 0) throw new IllegalArgumentException("Bước cron phải > 0: " + part);
+            }
+
+            int from, to;
+            if (range.equals("*")) {
+                from = min;
+                to = max;
+            } else if (range.contains("-")) {
+                String[] ab = range.split("-", 2);
+                from = Integer.parseInt(ab[0]);
+                to = Integer.parseInt(ab[1]);
+            } else {
+                from = Integer.parseInt(range);
+                to = slash >= 0 ? max : from; // "5/15" = từ 5, mỗi 15
+            }
+            if (from < min || to > max || from > to) {
+                throw new IllegalArgumentException("Giá trị cron ngoài khoảng [" + min + "-" + max + "]: " + part);
+            }
+            for (int v = from; v <= to; v += step) bits.set(v);
+        }
+        return bits;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,144 @@
+package com.viettel.sync.app;
+
+import com.viettel.sync.service.HiveDdlRewriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Đo thông lượng viết lại câu CREATE: cách cũ (3 lượt regex, compile mỗi lần gọi) so với {@link HiveDdlRewriter}.
+ * Không cần DB, dữ liệu sinh ngẫu nhiên (seed cố định) theo các dạng DDL hay gặp trong D_DB_2_HDFS_COMMAND_CREATE.
+ * Cách chạy: bench-ddl [số câu, mặc định 2000] [số vòng đo, mặc định 20]
+ */
+public final class DdlRewriteBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(DdlRewriteBenchmark.class);
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private DdlRewriteBenchmark() {}
+
+    public static void run(String[] args) {
+        int statements = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        List<String> corpus = corpus(statements, new Random(42));
+        Map<String, String> pathMap = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) pathMap.put("/data/raw/src" + i, "/data/ingestion/src" + i);
+        // Cả 2 cách dùng chung hàm map path -> chỉ đo phần viết lại câu lệnh
+        UnaryOperator<String> resolver = path -> {
+            for (Map.Entry<String, String> e : pathMap.entrySet()) {
+                if (path.contains(e.getKey())) return e.getValue() + path.substring(path.indexOf(e.getKey()) + e.getKey().length());
+            }
+            return path;
+        };
+        HiveDdlRewriter rewriter = new HiveDdlRewriter("ingestion.", "STORED AS PARQUET");
+
+        // Đối chiếu kết quả trước khi đo
+        int mismatches = 0;
+        for (String sql : corpus) {
+            String expected = legacyRewrite(sql, resolver);
+            String actual = rewriter.rewrite(sql, resolver);
+            if (!expected.equals(actual) && mismatches++ == 0) {
+                logger.warn("⚠️ Kết quả khác cách cũ:\n  cũ : {}\n  mới: {}", expected, actual);
+            }
+        }
+        logger.info("Đối chiếu {} câu: {} câu khác kết quả", corpus.size(), mismatches);
+
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            measure(corpus, sql -> legacyRewrite(sql, resolver));
+            measure(corpus, sql -> rewriter.rewrite(sql, resolver));
+        }
+        long legacyNanos = 0, rewriterNanos = 0;
+        for (int r = 0; r < rounds; r++) {
+            legacyNanos += measure(corpus, sql -> legacyRewrite(sql, resolver));
+            rewriterNanos += measure(corpus, sql -> rewriter.rewrite(sql, resolver));
+        }
+        double legacyRate = corpus.size() * (double) rounds / (legacyNanos / 1e9);
+        double rewriterRate = corpus.size() * (double) rounds / (rewriterNanos / 1e9);
+        logger.info("📊 Regex cũ       : {} câu/giây", String.format("%,.0f", legacyRate));
+        logger.info("📊 HiveDdlRewriter: {} câu/giây (x{})", String.format("%,.0f", rewriterRate),
+                String.format("%.1f", rewriterRate / legacyRate));
+    }
+
+    // Blackhole đơn giản để JIT không bỏ qua kết quả
+    private static int sink;
+
+    private static long measure(List<String> corpus, UnaryOperator<String> rewrite) {
+        long start = System.nanoTime();
+        int h = 0;
+        for (String sql : corpus) h += rewrite.apply(sql).length();
+        sink += h;
+        return System.nanoTime() - start;
+    }
+
+    private static List<String> corpus(int size, Random rnd) {
+        String[] formats = {
+                "ROW FORMAT DELIMITED FIELDS TERMINATED BY '\\t' LINES TERMINATED BY '\\n' STORED AS TEXTFILE",
+                "ROW FORMAT DELIMITED FIELDS TERMINATED BY ','\nSTORED AS TEXTFILE",
+                "ROW FORMAT SERDE 'org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe'\n"
+                        + "STORED AS INPUTFORMAT 'org.apache.hadoop.mapred.TextInputFormat'\n"
+                        + "OUTPUTFORMAT 'org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat'",
+                "STORED AS PARQUET",
+                "stored as textfile"
+        };
+        List<String> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder sb = new StringBuilder("CREATE EXTERNAL TABLE ");
+            if (rnd.nextBoolean()) sb.append("IF NOT EXISTS ");
+            sb.append("TBL_SRC_").append(i).append(" (\n");
+            int cols = 5 + rnd.nextInt(40);
+            for (int c = 0; c < cols; c++) {
+                sb.append("  col_").append(c).append(rnd.nextBoolean() ? " STRING" : " DECIMAL(20,4)");
+                if (rnd.nextInt(4) == 0) sb.append(" COMMENT 'cột số ").append(c).append("'");
+                sb.append(c + 1 < cols ? ",\n" : "\n");
+            }
+            sb.append(")\nPARTITIONED BY (partition STRING)\n");
+            sb.append(formats[rnd.nextInt(formats.length)]).append('\n');
+            sb.append("LOCATION 'hdfs://nameservice1/data/raw/src").append(rnd.nextInt(250))
+                    .append("/tbl_").append(i).append("'\n");
+            sb.append("TBLPROPERTIES ('serialization.null.format'='')");
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    /** Bản sao phần viết lại SQL của DataTransformer.transformCreate trước khi có HiveDdlRewriter */
+    private static String legacyRewrite(String rawSql, UnaryOperator<String> resolver) {
+        String regexTable = "(?i)(TABLE\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?)" +
+                "([a-zA-Z0-9_]+)";
+        Matcher matcher = Pattern.compile(regexTable).matcher(rawSql);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String tableName = matcher.group(2);
+            String newTableName = "ingestion." + tableName.toLowerCase();
+            matcher.appendReplacement(sb, matcher.group(1) + newTableName);
+        }
+        matcher.appendTail(sb);
+        rawSql = sb.toString();
+
+        String regexFormat = "(?is)((ROW\\s+FORMAT\\s+DELIMITED(\\s+FIELDS\\s+TERMINATED\\s+BY\\s*'[^']*')?(\\s+LINES\\s+TERMINATED\\s+BY\\s*'[^']*')?)"
+                + "|(STORED\\s+AS\\s+TEXTFILE)"
+                + "|(STORED\\s+AS\\s+INPUTFORMAT\\s+'[^']*'\\s+OUTPUTFORMAT\\s+'[^']*')"
+                + "|(ROW\\s+FORMAT\\s+SERDE\\s+'[^']*'))";
+        String tempSql = rawSql.replaceAll(regexFormat, "STORED AS PARQUET");
+        tempSql = tempSql.replaceAll("(?i)(STORED AS PARQUET\\s*)+", "STORED AS PARQUET ");
+
+        Pattern pathPattern = Pattern.compile("(?i)LOCATION\\s+'([^']+)'");
+        Matcher pathMatcher = pathPattern.matcher(tempSql);
+        StringBuffer sbPaths = new StringBuffer();
+        while (pathMatcher.find()) {
+            String resolvedPath = resolver.apply(pathMatcher.group(1));
+            pathMatcher.appendReplacement(sbPaths, "LOCATION '" + Matcher.quoteReplacement(resolvedPath) + "'");
+        }
+        pathMatcher.appendTail(sbPaths);
+        return sbPaths.toString();
+    }
+}
@@ -1,10 +1,21 @@
 package com.viettel.sync.app;
 
 import com.viettel.sync.config.AppConfigLoader;
+import com.viettel.sync.config.DatabaseUtils;
+import com.viettel.sync.config.SyncPair;
+import com.viettel.sync.config.SyncScope;
+import com.viettel.sync.service.MultiPairSync;
+import com.viettel.sync.service.OfflinePlanner;
 import com.viettel.sync.service.SyncService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
@@ -15,21 +26,67 @@ public class Main {
         logger.info("==========================================");
 
         try {
+            // plan <file snapshot> [file báo cáo]: lập kế hoạch offline, không kết nối DB
+            if (args.length > 0 && args[0].equals("plan")) {
+                runPlan(args);
+                return;
+            }
+
+            // bench-ddl [số câu] [số vòng]: đo thông lượng viết lại câu CREATE, không kết nối DB
+            if (args.length > 0 && args[0].equals("bench-ddl")) {
+                DdlRewriteBenchmark.run(args);
+                return;
+            }
+
+            // --full: bỏ qua chế độ INCREMENTAL
+            boolean forceFull = Arrays.asList(args).contains("--full");
+
+            // Nhiều cặp schema (sync.pairs) -> chạy song song trên pool giới hạn
+            List<SyncPair> pairs = AppConfigLoader.getSyncPairs();
+
+            // snapshot [file] [--pair=<tên>]: chụp dữ liệu Source/Target ra file, không ghi DB
+            if (args.length > 0 && args[0].equals("snapshot")) {
+                SyncPair pair = selectPair(pairs, args);
+                String file = args.length > 1 && !args[1].startsWith("--") ? args[1] : "state/" + pair.name() + ".snapshot";
+                new SyncService(pair).captureSnapshot(Path.of(file));
+                return;
+            }
+
+            // --connections=1,2 / --configs=10,11 [--pair=<tên>]: chỉ đồng bộ phần đồ thị Pipeline bên dưới các ID này
+            SyncScope scope = SyncScope.fromArgs(args);
+            if (scope != null) {
+                new SyncService(selectPair(pairs, args)).runScopedSync(scope);
+                return;
+            }
+
+            // --daemon: chạy thường trú theo lịch + HTTP trigger, dừng bằng Ctrl+C / SIGTERM
+            if (Arrays.asList(args).contains("--daemon")) {
+                SyncDaemon.run(pairs);
+                return;
+            }
+            if (pairs.size() > 1) {
+                MultiPairSync.run(pairs, AppConfigLoader.getPairWorkers(), forceFull);
+                return;
+            }
 
             // Log kiểm tra lại schema (Dùng cách gọi Getter chuẩn của bạn)
-            logger.info("Schema Source: {}", AppConfigLoader.getDbConfig().sourceSchema());
-            logger.info("Schema Target: {}", AppConfigLoader.getDbConfig().targetSchema());
+            SyncPair pair = pairs.get(0);
+            logger.info("Schema Source: {}", pair.db().sourceSchema());
+            logger.info("Schema Target: {}", pair.db().targetSchema());
 
             // 2. Khởi tạo Service chính
             // (Service sẽ tự khởi tạo các Repository bên trong constructor của nó)
-            SyncService syncService = new SyncService();
+            SyncService syncService = new SyncService(pair);
 
             // 3. Chạy luồng đồng bộ
-            syncService.runSync();
+            syncService.runSync(forceFull);
 
         } catch (Exception e) {
             logger.error("❌ CHƯƠNG TRÌNH GẶP LỖI KHÔNG MONG MUỐN:", e);
         } finally {
+            DatabaseUtils.logPoolStats();
+            DatabaseUtils.shutdown();
+
             long endTime = System.currentTimeMillis();
             long duration = endTime - startTime;
 
@@ -39,4 +96,29 @@ public class Main {
             logger.info("==========================================");
         }
     }
+
+    private static void runPlan(String[] args) throws Exception {
+        if (args.length < 2) {
+            logger.error("Cách dùng: plan <file snapshot> [file báo cáo]");
+            return;
+        }
+        String report = OfflinePlanner.plan(Path.of(args[1]));
+        if (args.length > 2) {
+            Files.writeString(Path.of(args[2]), report, StandardCharsets.UTF_8);
+            logger.info("Đã ghi kế hoạch vào {}", args[2]);
+        } else {
+            System.out.println(report);
+        }
+    }
+
+    private static SyncPair selectPair(List<SyncPair> pairs, String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--pair=")) {
+                String name = arg.substring("--pair=".length());
+                return pairs.stream().filter(p -> p.name().equals(name)).findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Không có cặp schema tên " + name));
+            }
+        }
+        return pairs.get(0);
+    }
 }
@@ -0,0 +1,228 @@
+package com.viettel.sync.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.viettel.sync.config.AppConfigLoader;
+import com.viettel.sync.config.DaemonOptions;
+import com.viettel.sync.config.DatabaseUtils;
+import com.viettel.sync.config.DatabaseUtils.PoolStats;
+import com.viettel.sync.config.SyncPair;
+import com.viettel.sync.service.MultiPairSync;
+import com.viettel.sync.service.MultiPairSync.PairResult;
+import com.viettel.sync.service.SyncService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chế độ chạy thường trú (--daemon): giữ JVM, SyncService (repository, BatchPolicy, RowMapper cache) giữa các lần chạy,
+ * chạy runSync theo chu kỳ hoặc cron, và mở HTTP nội bộ:
+ *   POST /sync[?full=true] : chạy ngay (202), hoặc 409 nếu đang có lần chạy khác
+ *   GET  /status           : trạng thái lần chạy gần nhất + số liệu connection pool (JSON)
+ * Không bao giờ chạy chồng: lần kích hoạt rơi vào lúc đang chạy sẽ bị bỏ qua.
+ */
+public class SyncDaemon {
+    private static final Logger logger = LoggerFactory.getLogger(SyncDaemon.class);
+
+    private final DaemonOptions options;
+    private final List<SyncService> services;
+    private final int pairWorkers;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sync-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> new Thread(r, "sync-runner"));
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private HttpServer http;
+
+    // Trạng thái
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private volatile Instant lastStart;
+    private volatile Instant lastEnd;
+    private volatile String lastTrigger;
+    private volatile List<PairResult> lastResults = List.of();
+    private volatile ZonedDateTime nextRun;
+
+    public SyncDaemon(List<SyncPair> pairs, int pairWorkers, DaemonOptions options) {
+        this.options = options;
+        this.pairWorkers = pairWorkers;
+        this.services = pairs.stream().map(SyncService::new).toList();
+    }
+
+    public static void run(List<SyncPair> pairs) throws Exception {
+        SyncDaemon daemon = new SyncDaemon(pairs, AppConfigLoader.getPairWorkers(), AppConfigLoader.getDaemonOptions());
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "sync-shutdown"));
+        daemon.start();
+        daemon.stopped.await();
+    }
+
+    public void start() throws IOException {
+        if (options.port() > 0) {
+            http = HttpServer.create(new InetSocketAddress(options.bindAddress(), options.port()), 0);
+            http.createContext("/sync", this::handleSync);
+            http.createContext("/status", this::handleStatus);
+            http.start();
+            logger.info("🌐 HTTP lắng nghe tại http://{}:{} (POST /sync, GET /status)", options.bindAddress(), options.port());
+        }
+
+        if (options.cron() != null) {
+            CronSchedule cron = CronSchedule.parse(options.cron());
+            logger.info("⏰ Lịch chạy theo cron: {}", cron);
+            scheduleCron(cron);
+        } else if (options.intervalSeconds() > 0) {
+            logger.info("⏰ Lịch chạy mỗi {} giây", options.intervalSeconds());
+            nextRun = ZonedDateTime.now();
+            scheduler.scheduleAtFixedRate(() -> {
+                nextRun = ZonedDateTime.now().plusSeconds(options.intervalSeconds());
+                trigger("schedule", false);
+            }, 0, options.intervalSeconds(), TimeUnit.SECONDS);
+        } else {
+            logger.info("⏰ Không có lịch chạy, chỉ chạy khi được gọi qua HTTP");
+        }
+    }
+
+    /**
+     * Hẹn từng lần theo cron (tính lại thời điểm kế tiếp sau mỗi lần)
+     */
+    private void scheduleCron(CronSchedule cron) {
+        ZonedDateTime next = cron.next(ZonedDateTime.now());
+        nextRun = next;
+        long delayMs = Math.max(0, Duration.between(ZonedDateTime.now(), next).toMillis());
+        scheduler.schedule(() -> {
+            trigger("cron", false);
+            scheduleCron(cron);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return false nếu đang có lần chạy khác (bị bỏ qua)
+     */
+    public boolean trigger(String source, boolean forceFull) {
+        if (!running.compareAndSet(false, true)) {
+            skippedCount.incrementAndGet();
+            logger.warn("⏭️ Bỏ qua lần chạy ({}): lần chạy trước chưa xong", source);
+            return false;
+        }
+        try {
+            runner.submit(() -> runOnce(source, forceFull));
+        } catch (RejectedExecutionException e) {
+            running.set(false); // đang dừng daemon
+            return false;
+        }
+        return true;
+    }
+
+    private void runOnce(String source, boolean forceFull) {
+        lastStart = Instant.now();
+        lastTrigger = source;
+        try {
+            logger.info("========== [DAEMON] Lần chạy #{} ({}) ==========", runCount.incrementAndGet(), source);
+            if (services.size() == 1) {
+                SyncService service = services.get(0);
+                long start = System.currentTimeMillis();
+                boolean ok = service.runSync(forceFull);
+                lastResults = List.of(new PairResult(service.getPair(), ok, System.currentTimeMillis() - start));
+            } else {
+                lastResults = MultiPairSync.runServices(services, pairWorkers, forceFull);
+            }
+        } catch (Throwable t) {
+            logger.error("❌ [DAEMON] Lần chạy gặp lỗi không mong muốn", t);
+        } finally {
+            lastEnd = Instant.now();
+            running.set(false);
+            DatabaseUtils.logPoolStats();
+        }
+    }
+
+    public void stop() {
+        logger.info("Đang dừng daemon...");
+        if (http != null) http.stop(0);
+        scheduler.shutdownNow();
+        runner.shutdown();
+        try {
+            // Chờ lần chạy hiện tại commit/rollback xong
+            if (!runner.awaitTermination(5, TimeUnit.MINUTES)) runner.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        DatabaseUtils.shutdown();
+        stopped.countDown();
+    }
+
+    // --- HTTP ---
+
+    private void handleSync(HttpExchange ex) throws IOException {
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            respond(ex, 405, "{\"error\":\"method not allowed\"}");
+            return;
+        }
+        String query = ex.getRequestURI().getQuery();
+        boolean full = query != null && query.contains("full=true");
+        boolean accepted = trigger("http", full);
+        respond(ex, accepted ? 202 : 409, "{\"accepted\":" + accepted + ",\"running\":" + running.get() + "}");
+    }
+
+    private void handleStatus(HttpExchange ex) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"running\":").append(running.get());
+        json.append(",\"runs\":").append(runCount.get());
+        json.append(",\"skipped\":").append(skippedCount.get());
+        json.append(",\"lastTrigger\":").append(quote(lastTrigger));
+        json.append(",\"lastStart\":").append(quote(lastStart));
+        json.append(",\"lastEnd\":").append(quote(lastEnd));
+        json.append(",\"nextRun\":").append(quote(nextRun));
+        json.append(",\"pairs\":[");
+        List<PairResult> results = lastResults;
+        for (int i = 0; i < results.size(); i++) {
+            PairResult r = results.get(i);
+            if (i > 0) json.append(",");
+            json.append("{\"name\":").append(quote(r.pair().name()))
+                    .append(",\"source\":").append(quote(r.pair().db().sourceSchema()))
+                    .append(",\"target\":").append(quote(r.pair().db().targetSchema()))
+                    .append(",\"success\":").append(r.success())
+                    .append(",\"millis\":").append(r.millis()).append("}");
+        }
+        json.append("],\"pools\":[");
+        List<PoolStats> pools = DatabaseUtils.poolStats();
+        for (int i = 0; i < pools.size(); i++) {
+            PoolStats p = pools.get(i);
+            if (i > 0) json.append(",");
+            json.append("{\"name\":").append(quote(p.name()))
+                    .append(",\"active\":").append(p.active())
+                    .append(",\"idle\":").append(p.idle())
+                    .append(",\"total\":").append(p.total())
+                    .append(",\"waiting\":").append(p.waiting()).append("}");
+        }
+        json.append("]}");
+        respond(ex, 200, json.toString());
+    }
+
+    private static String quote(Object value) {
+        if (value == null) return "null";
+        return "\"" + value.toString().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void respond(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package com.viettel.sync.config;
 
+import com.viettel.sync.core.BatchPolicy;
+import com.viettel.sync.core.CredentialCodec;
+import com.viettel.sync.core.RepositoryOptions;
+import com.viettel.sync.core.RepositoryOptions.DeleteMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public class AppConfigLoader {
@@ -34,7 +42,141 @@ public class AppConfigLoader {
         );
     }
 
+    public static SyncPair getDefaultSyncPair() {
+        return new SyncPair("default", null, getDbConfig());
+    }
+
+    /**
+     * Danh sách cặp schema cần đồng bộ.
+     * sync.pairs=a,b ; sync.pair.<tên>.source / .target / .datasource (tùy chọn, trỏ tới datasource.<ds>.url|username|password)
+     * Không khai báo sync.pairs -> 1 cặp mặc định từ schema.source / schema.target
+     */
+    public static List<SyncPair> getSyncPairs() {
+        String names = properties.getProperty("sync.pairs", "").trim();
+        if (names.isEmpty()) return List.of(getDefaultSyncPair());
+
+        List<SyncPair> pairs = new ArrayList<>();
+        for (String raw : names.split(",")) {
+            String name = raw.trim();
+            if (name.isEmpty()) continue;
+            String prefix = "sync.pair." + name + ".";
+            String source = required(prefix + "source");
+            String target = required(prefix + "target");
+            String ds = properties.getProperty(prefix + "datasource");
+            ds = ds == null || ds.isBlank() ? null : ds.trim();
+
+            String dsPrefix = ds == null ? "datasource." : "datasource." + ds + ".";
+            pairs.add(new SyncPair(name, ds, new DbConfig(
+                    ds == null ? properties.getProperty("datasource.url") : required(dsPrefix + "url"),
+                    properties.getProperty(dsPrefix + "username"),
+                    properties.getProperty(dsPrefix + "password"),
+                    source,
+                    target
+            )));
+        }
+        return pairs;
+    }
+
+    /**
+     * Số cặp schema chạy đồng thời (mỗi cặp 1 transaction ghi riêng)
+     */
+    public static int getPairWorkers() {
+        return Integer.parseInt(properties.getProperty("app.pair-workers", "2").trim());
+    }
+
+    public static PoolOptions getPoolOptions() {
+        return new PoolOptions(
+                Integer.parseInt(properties.getProperty("app.pool.max-size", "10").trim()),
+                Integer.parseInt(properties.getProperty("app.pool.min-idle", "1").trim()),
+                Long.parseLong(properties.getProperty("app.pool.connection-timeout-ms", "30000").trim()),
+                Long.parseLong(properties.getProperty("app.pool.validation-timeout-ms", "3000").trim()),
+                Long.parseLong(properties.getProperty("app.pool.leak-detection-ms", "60000").trim()),
+                Integer.parseInt(properties.getProperty("app.pool.statement-cache-size", "50").trim())
+        );
+    }
+
+    public static DaemonOptions getDaemonOptions() {
+        String cron = properties.getProperty("app.daemon.cron", "").trim();
+        return new DaemonOptions(
+                Long.parseLong(properties.getProperty("app.daemon.interval-seconds", "300").trim()),
+                cron.isEmpty() ? null : cron,
+                properties.getProperty("app.daemon.bind", "127.0.0.1").trim(),
+                Integer.parseInt(properties.getProperty("app.daemon.port", "8089").trim())
+        );
+    }
+
+    public static IdAllocatorOptions getIdAllocatorOptions() {
+        String table = properties.getProperty("app.id-allocator.table", "").trim();
+        return new IdAllocatorOptions(
+                table.isEmpty() ? IdAllocatorOptions.DEFAULT_TABLE : table,
+                Integer.parseInt(properties.getProperty("app.id-allocator.block-size", "100").trim())
+        );
+    }
+
+    /**
+     * Mỗi lần gọi trả codec mới (cache giải mã / mã hóa chỉ sống trong 1 lần chạy)
+     */
+    public static CredentialCodec getCredentialCodec() {
+        return new CredentialCodec(
+                Integer.parseInt(properties.getProperty("app.credential.workers", "4").trim()),
+                Integer.parseInt(properties.getProperty("app.credential.cache-size", "10000").trim())
+        );
+    }
+
+    private static String required(String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Thiếu cấu hình bắt buộc: " + key);
+        }
+        return value.trim();
+    }
+
+    public static int getFetchSize() {
+        return Integer.parseInt(properties.getProperty("app.fetch-size", "500").trim());
+    }
+
     public static int getBatchSize() {
         return Integer.parseInt(properties.getProperty("app.batch-size", "1000"));
     }
+
+    /**
+     * app.batch-size.<TABLE>[.<insert|merge|delete>] ghi đè kích thước batch cho từng bảng / thao tác
+     */
+    public static BatchPolicy getBatchPolicy() {
+        String prefix = "app.batch-size.";
+        Map<String, Integer> overrides = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                overrides.put(name.substring(prefix.length()), Integer.parseInt(properties.getProperty(name).trim()));
+            }
+        }
+        return new BatchPolicy(
+                getBatchSize(),
+                overrides,
+                Boolean.parseBoolean(properties.getProperty("app.batch-adaptive", "false").trim()),
+                Long.parseLong(properties.getProperty("app.batch-target-ms", "200").trim()),
+                Integer.parseInt(properties.getProperty("app.batch-min", "100").trim()),
+                Integer.parseInt(properties.getProperty("app.batch-max", "10000").trim())
+        );
+    }
+
+    public static RepositoryOptions getRepositoryOptions() {
+        return new RepositoryOptions(
+                DeleteMode.valueOf(properties.getProperty("app.delete-mode", "AUTO").trim().toUpperCase()),
+                getBatchPolicy(),
+                getFetchSize()
+        );
+    }
+
+    public static SyncOptions getSyncOptions() {
+        return new SyncOptions(
+                SyncOptions.WriteMode.valueOf(properties.getProperty("app.write-mode", "REPLACE").trim().toUpperCase()),
+                SyncOptions.BulkLoadMode.valueOf(properties.getProperty("app.bulk-load", "OFF").trim().toUpperCase()),
+                "INCREMENTAL".equalsIgnoreCase(properties.getProperty("app.sync-mode", "FULL").trim()),
+                properties.getProperty("app.state-file", "state/sync-state.properties").trim(),
+                Integer.parseInt(properties.getProperty("app.read-connections", "4").trim()),
+                Boolean.parseBoolean(properties.getProperty("app.checkpoint", "false").trim()),
+                Integer.parseInt(properties.getProperty("app.pipeline-chunk-connections", "0").trim())
+        );
+    }
 }
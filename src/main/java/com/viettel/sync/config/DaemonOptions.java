@@ -0,0 +1,15 @@
+package com.viettel.sync.config;
+
+/**
+ * Tùy chọn chế độ daemon (chạy với tham số --daemon)
+ * @param intervalSeconds: chu kỳ chạy (giây), dùng khi không khai báo cron; <= 0 = chỉ chạy khi được gọi qua HTTP
+ * @param cron: biểu thức cron 5 trường, ưu tiên hơn intervalSeconds (null = không dùng)
+ * @param bindAddress: địa chỉ HTTP lắng nghe (mặc định chỉ localhost)
+ * @param port: cổng HTTP, <= 0 = tắt HTTP
+ */
+public record DaemonOptions(
+        long intervalSeconds,
+        String cron,
+        String bindAddress,
+        int port
+) {}
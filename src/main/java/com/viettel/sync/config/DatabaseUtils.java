@@ -1,25 +1,69 @@
 package com.viettel.sync.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Cấp kết nối từ connection pool (HikariCP), mỗi datasource (url + user) 1 pool tạo lần đầu khi cần.
+ * Pool giữ kết nối giữa các lần chạy (daemon, nhiều cặp schema), kiểm tra kết nối trước khi cấp,
+ * cảnh báo kết nối bị giữ quá lâu và bật Oracle implicit statement cache: câu SQL lặp lại
+ * chỉ parse 1 lần trên mỗi kết nối.
+ */
 public class DatabaseUtils {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseUtils.class);
 
+    /** Số liệu 1 pool tại thời điểm gọi */
+    public record PoolStats(String name, int active, int idle, int total, int waiting) {}
+
+    private record PoolKey(String url, String username) {}
+
+    private static final Map<PoolKey, HikariDataSource> pools = new ConcurrentHashMap<>();
+    private static volatile DbConfig defaultConfig;
+
     private DatabaseUtils() {}
 
     public static Connection getConnection() throws SQLException {
-        DbConfig config = AppConfigLoader.getDbConfig();
-        logger.debug("Opening connection to DB: {}", config.url());
-        Connection conn = DriverManager.getConnection(config.url(), config.username(), config.password());
+        return getConnection(defaultConfig());
+    }
+
+    public static Connection getConnection(DbConfig config) throws SQLException {
+        Connection conn = pool(config).getConnection();
         conn.setAutoCommit(false);
         return conn;
     }
 
+    /**
+     * Kết nối chỉ dùng để đọc (Oracle: SET TRANSACTION READ ONLY -> các truy vấn cùng kết nối thấy cùng một thời điểm).
+     * Pool tự trả lại chế độ read-write khi kết nối được đóng (trả về pool).
+     */
+    public static Connection getReadOnlyConnection() throws SQLException {
+        return getReadOnlyConnection(defaultConfig());
+    }
+
+    public static Connection getReadOnlyConnection(DbConfig config) throws SQLException {
+        Connection conn = getConnection(config);
+        try {
+            conn.setReadOnly(true);
+        } catch (SQLException e) {
+            closeConnection(conn);
+            throw e;
+        }
+        return conn;
+    }
+
+    /**
+     * Trả kết nối về pool
+     */
     public static void closeConnection(Connection conn) {
         if (conn != null) {
             try {
@@ -29,4 +73,70 @@ public class DatabaseUtils {
             }
         }
     }
+
+    public static List<PoolStats> poolStats() {
+        List<PoolStats> stats = new ArrayList<>();
+        for (HikariDataSource ds : pools.values()) {
+            HikariPoolMXBean mx = ds.getHikariPoolMXBean();
+            if (mx == null) continue;
+            stats.add(new PoolStats(ds.getPoolName(), mx.getActiveConnections(), mx.getIdleConnections(),
+                    mx.getTotalConnections(), mx.getThreadsAwaitingConnection()));
+        }
+        return stats;
+    }
+
+    public static void logPoolStats() {
+        for (PoolStats s : poolStats()) {
+            logger.info("[POOL] {}: active={}, idle={}, total={}, waiting={}",
+                    s.name(), s.active(), s.idle(), s.total(), s.waiting());
+        }
+    }
+
+    /**
+     * Đóng toàn bộ pool (khi kết thúc chương trình)
+     */
+    public static void shutdown() {
+        for (HikariDataSource ds : pools.values()) {
+            ds.close();
+        }
+        pools.clear();
+    }
+
+    private static DbConfig defaultConfig() {
+        DbConfig config = defaultConfig;
+        if (config == null) {
+            config = AppConfigLoader.getDbConfig();
+            defaultConfig = config;
+        }
+        return config;
+    }
+
+    private static HikariDataSource pool(DbConfig config) {
+        return pools.computeIfAbsent(new PoolKey(config.url(), config.username()), key -> createPool(config));
+    }
+
+    private static HikariDataSource createPool(DbConfig config) {
+        PoolOptions opt = AppConfigLoader.getPoolOptions();
+
+        HikariConfig hc = new HikariConfig();
+        hc.setPoolName("sync-" + config.username() + "-" + (pools.size() + 1));
+        hc.setJdbcUrl(config.url());
+        hc.setUsername(config.username());
+        hc.setPassword(config.password());
+        hc.setAutoCommit(false);
+        hc.setMaximumPoolSize(opt.maxSize());
+        hc.setMinimumIdle(Math.min(opt.minIdle(), opt.maxSize()));
+        hc.setConnectionTimeout(opt.connectionTimeoutMs());
+        hc.setValidationTimeout(opt.validationTimeoutMs());
+        hc.setLeakDetectionThreshold(opt.leakDetectionMs());
+        // Không bắt buộc kết nối được ngay lúc tạo pool: lỗi mạng sẽ báo ở lần getConnection đầu tiên
+        hc.setInitializationFailTimeout(-1);
+        if (opt.statementCacheSize() > 0) {
+            hc.addDataSourceProperty("oracle.jdbc.implicitStatementCacheSize", String.valueOf(opt.statementCacheSize()));
+        }
+
+        logger.info("Khởi tạo connection pool {} (max={}, minIdle={}, statementCache={})",
+                hc.getPoolName(), opt.maxSize(), hc.getMinimumIdle(), opt.statementCacheSize());
+        return new HikariDataSource(hc);
+    }
 }
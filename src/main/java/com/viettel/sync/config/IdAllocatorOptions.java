@@ -0,0 +1,14 @@
+package com.viettel.sync.config;
+
+/**
+ * Tùy chọn cấp ID cho các dòng tự sinh (app.id-allocator.*)
+ * @param table: bảng cấp phát ở schema Target (xem IdBlockRepository, tự tạo nếu chưa có).
+ *              Lần đồng bộ thật luôn dùng bảng này; cấp trong bộ nhớ chỉ dành cho lập kế hoạch offline (không ghi DB)
+ * @param blockSize: số ID giữ mỗi lần truy cập bảng cấp phát
+ */
+public record IdAllocatorOptions(
+        String table,
+        int blockSize
+) {
+    public static final String DEFAULT_TABLE = "SYNC_ID_BLOCK";
+}
@@ -0,0 +1,19 @@
+package com.viettel.sync.config;
+
+/**
+ * Tùy chọn connection pool (app.pool.*)
+ * @param maxSize: số kết nối tối đa mỗi datasource (nên >= app.read-connections + 1 cho mỗi cặp chạy đồng thời)
+ * @param minIdle: số kết nối rảnh luôn giữ sẵn
+ * @param connectionTimeoutMs: thời gian chờ tối đa để lấy kết nối từ pool
+ * @param validationTimeoutMs: thời gian tối đa kiểm tra kết nối còn sống (Connection.isValid) trước khi cấp
+ * @param leakDetectionMs: cảnh báo kết nối bị giữ lâu hơn ngưỡng này mà chưa trả về pool, 0 = tắt
+ * @param statementCacheSize: số câu lệnh driver cache mỗi kết nối (Oracle implicit statement cache), 0 = tắt
+ */
+public record PoolOptions(
+        int maxSize,
+        int minIdle,
+        long connectionTimeoutMs,
+        long validationTimeoutMs,
+        long leakDetectionMs,
+        int statementCacheSize
+) {}
@@ -0,0 +1,31 @@
+package com.viettel.sync.config;
+
+/**
+ * Tùy chọn luồng đồng bộ (đọc từ application.properties)
+ * readConnections: số kết nối đọc song song ở pha đọc dữ liệu trước khi ghi
+ * checkpoint: commit riêng từng bước và ghi nhật ký vào stateFile, chạy lại chỉ làm lại bước chưa xong
+ * pipelineChunkConnections: > 0 thì ghi Pipeline theo chunk, mỗi chunk gồm bấy nhiêu Connection và commit riêng
+ */
+public record SyncOptions(
+        WriteMode writeMode,
+        BulkLoadMode bulkLoadMode,
+        boolean incremental,
+        String stateFile,
+        int readConnections,
+        boolean checkpoint,
+        int pipelineChunkConnections
+) {
+    /**
+     * REPLACE : xóa toàn bộ dòng không Safe rồi insert lại (cách cũ)
+     * MERGE   : chỉ xóa dòng không còn trong Source, các dòng còn lại MERGE theo ID (bỏ qua dòng không đổi)
+     * DIFF    : so hash nội dung với Target trong bộ nhớ, chỉ ghi phần insert/update/delete thực sự thay đổi
+     */
+    public enum WriteMode { REPLACE, MERGE, DIFF }
+
+    /**
+     * OFF  : luôn insert thường
+     * AUTO : insert direct-path (APPEND_VALUES) khi bảng Target không còn dòng nào trước lúc ghi
+     *        (môi trường mới, hoặc mọi dòng cũ vừa bị xóa trong lần chạy này)
+     */
+    public enum BulkLoadMode { OFF, AUTO }
+}
@@ -0,0 +1,18 @@
+package com.viettel.sync.config;
+
+/**
+ * 1 cặp schema nguồn -> đích cần đồng bộ
+ * @param name: tên cặp (hiển thị trong log và báo cáo)
+ * @param datasource: tên datasource riêng (datasource.<tên>.*), null nếu dùng datasource mặc định
+ * @param db: thông tin kết nối + schema của cặp
+ */
+public record SyncPair(String name, String datasource, DbConfig db) {
+
+    /**
+     * Tiền tố key trong file trạng thái. Cặp dùng datasource mặc định giữ key cũ "<nguồn>><đích>."
+     */
+    public String stateKey() {
+        String key = db.sourceSchema() + ">" + db.targetSchema() + ".";
+        return datasource == null ? key : datasource + "/" + key;
+    }
+}
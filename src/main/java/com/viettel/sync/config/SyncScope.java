@@ -0,0 +1,42 @@
+package com.viettel.sync.config;
+
+import com.viettel.sync.core.LongSet;
+
+/**
+ * Phạm vi đồng bộ 1 phần đồ thị Pipeline (tham số dòng lệnh --connections=1,2 / --configs=10,11):
+ * connectionIds: Connection + toàn bộ Command/Config/Create/Clean bên dưới
+ * configIds: chỉ các Config này (kèm Command, Create, Clean của chúng)
+ * Điều kiện lọc được đẩy xuống câu truy vấn, không đọc lại cả DB.
+ */
+public record SyncScope(LongSet connectionIds, LongSet configIds) {
+
+    /**
+     * @return null nếu không có tham số phạm vi (đồng bộ toàn bộ)
+     */
+    public static SyncScope fromArgs(String[] args) {
+        LongSet connections = new LongSet();
+        LongSet configs = new LongSet();
+        for (String arg : args) {
+            if (arg.startsWith("--connections=")) parseIds(arg.substring("--connections=".length()), connections);
+            else if (arg.startsWith("--configs=")) parseIds(arg.substring("--configs=".length()), configs);
+        }
+        if (connections.isEmpty() && configs.isEmpty()) return null;
+        return new SyncScope(connections, configs);
+    }
+
+    private static void parseIds(String raw, LongSet into) {
+        for (String part : raw.split(",")) {
+            if (part.isBlank()) continue;
+            try {
+                into.add(Long.parseLong(part.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ID không hợp lệ trong phạm vi đồng bộ: " + part, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + connectionIds + ", configs=" + configIds;
+    }
+}
@@ -0,0 +1,97 @@
+package com.viettel.sync.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kích thước batch JDBC theo từng bảng / thao tác.
+ * - Cố định: app.batch-size, ghi đè bằng app.batch-size.<TABLE> hoặc app.batch-size.<TABLE>.<insert|merge|delete>
+ * - Thích nghi (app.batch-adaptive=true): đo thời gian mỗi lần executeBatch, co/giãn batch trong [min, max]
+ *   để mỗi round trip xấp xỉ app.batch-target-ms (DB ở site xa RTT lớn -> batch to hơn và ngược lại).
+ */
+public final class BatchPolicy {
+    private static final Logger logger = LoggerFactory.getLogger(BatchPolicy.class);
+
+    public enum Op { INSERT, MERGE, DELETE }
+
+    private final int defaultSize;
+    private final Map<String, Integer> overrides;
+    private final boolean adaptive;
+    private final long targetMillis;
+    private final int minSize;
+    private final int maxSize;
+
+    // Kích thước hiện tại của từng "TABLE.op" ở chế độ thích nghi
+    private final Map<String, Integer> current = new ConcurrentHashMap<>();
+
+    /**
+     * @param overrides: key dạng "TABLE" hoặc "TABLE.op" (không phân biệt hoa thường)
+     */
+    public BatchPolicy(int defaultSize, Map<String, Integer> overrides,
+                       boolean adaptive, long targetMillis, int minSize, int maxSize) {
+        this.defaultSize = Math.max(1, defaultSize);
+        this.overrides = new ConcurrentHashMap<>();
+        overrides.forEach((k, v) -> this.overrides.put(k.toUpperCase(), v));
+        this.adaptive = adaptive;
+        this.targetMillis = targetMillis;
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+    }
+
+    public static BatchPolicy fixed(int size) {
+        return new BatchPolicy(size, Map.of(), false, 0, 1, size);
+    }
+
+    /** Kích thước batch nên dùng cho lần executeBatch kế tiếp */
+    public int sizeFor(String table, Op op) {
+        String key = key(table, op);
+        if (!adaptive) return configured(table, key);
+        return current.computeIfAbsent(key, k -> clamp(configured(table, k)));
+    }
+
+    /**
+     * Ghi nhận 1 lần executeBatch (rows dòng, mất nanos) và điều chỉnh kích thước cho lần sau
+     */
+    public void record(String table, Op op, int rows, long nanos) {
+        if (rows <= 0) return;
+        double millis = nanos / 1_000_000.0;
+        long rowsPerSec = nanos > 0 ? Math.round(rows * 1_000_000_000.0 / nanos) : rows;
+        if (!adaptive) {
+            logger.debug("   [BATCH] {} {}: {} dòng / {} ms ({} dòng/s)", table, op, rows, Math.round(millis), rowsPerSec);
+            return;
+        }
+
+        String key = key(table, op);
+        current.compute(key, (k, size) -> {
+            int cur = size != null ? size : clamp(configured(table, k));
+            // Batch chưa đầy (phần cuối danh sách) đo không đại diện -> chỉ cho phép giảm
+            double perRowMs = Math.max(millis / rows, 0.0001);
+            int ideal = (int) Math.min(Integer.MAX_VALUE, Math.round(targetMillis / perRowMs));
+            if (rows < cur && ideal > cur) ideal = cur;
+            // Làm mượt và giới hạn mỗi bước tăng/giảm tối đa 2 lần
+            int next = (int) Math.round(cur * 0.5 + ideal * 0.5);
+            next = Math.max(cur / 2, Math.min(cur * 2, next));
+            next = clamp(next);
+            logger.debug("   [BATCH] {} {}: {} dòng / {} ms ({} dòng/s) -> batch {} => {}",
+                    table, op, rows, Math.round(millis), rowsPerSec, cur, next);
+            return next;
+        });
+    }
+
+    private int configured(String table, String key) {
+        Integer v = overrides.get(key);
+        if (v == null) v = overrides.get(table.toUpperCase());
+        return v != null ? Math.max(1, v) : defaultSize;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    private static String key(String table, Op op) {
+        return table.toUpperCase() + "." + op.name();
+    }
+}
@@ -0,0 +1,93 @@
+package com.viettel.sync.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lớp giải mã / mã hóa thông tin đăng nhập quanh {@link SecurityUtils}, nhớ kết quả trong bộ nhớ
+ * (tối đa {@code maxEntries} giá trị mỗi chiều): cùng 1 chuỗi mã hóa chỉ gọi thư viện PassCode 1 lần.
+ * Tạo mới cho mỗi lần chạy, không giữ thông tin đăng nhập giữa các lần chạy.
+ *
+ * {@link #warmUp} giải mã trước cả danh sách song song trên {@code workers} luồng
+ * (thư viện PassCode không giữ trạng thái giữa các lần gọi; đặt workers = 1 để chạy tuần tự).
+ */
+public final class CredentialCodec {
+    private static final Logger logger = LoggerFactory.getLogger(CredentialCodec.class);
+
+    /** Gọi thẳng SecurityUtils, không cache (dùng khi không có codec của lần chạy) */
+    public static final CredentialCodec UNCACHED = new CredentialCodec(1, 0);
+
+    // ConcurrentHashMap không chứa được null -> bọc Optional
+    private final Map<String, Optional<String>> decrypted = new ConcurrentHashMap<>();
+    private final Map<String, Optional<String>> encrypted = new ConcurrentHashMap<>();
+    private final int workers;
+    private final int maxEntries;
+
+    public CredentialCodec(int workers, int maxEntries) {
+        this.workers = Math.max(1, workers);
+        this.maxEntries = Math.max(0, maxEntries);
+    }
+
+    public String decrypt(String text) {
+        return cached(decrypted, text, SecurityUtils::decrypt);
+    }
+
+    public String encrypt(String text) {
+        return cached(encrypted, text, SecurityUtils::encrypt);
+    }
+
+    /** Dạng mật khẩu lưu ở Target: giải mã theo khóa Source rồi mã hóa lại theo khóa Target */
+    public String reencrypt(String text) {
+        return encrypt(decrypt(text));
+    }
+
+    /**
+     * Tính trước song song các giá trị sẽ dùng (trùng lặp chỉ tính 1 lần)
+     * @param toDecrypt: các giá trị sẽ gọi decrypt (VD: user)
+     * @param toReencrypt: các giá trị sẽ gọi reencrypt (VD: pass)
+     */
+    public void warmUp(Collection<String> toDecrypt, Collection<String> toReencrypt) throws InterruptedException {
+        Set<String> dec = new LinkedHashSet<>(toDecrypt);
+        Set<String> reenc = new LinkedHashSet<>(toReencrypt);
+        dec.remove(null);
+        reenc.remove(null);
+        if (maxEntries == 0 || dec.size() + reenc.size() == 0) return;
+
+        long start = System.nanoTime();
+        if (workers == 1) {
+            dec.forEach(this::decrypt);
+            reenc.forEach(this::reencrypt);
+        } else {
+            AtomicInteger seq = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+                Thread t = new Thread(r, "credential-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Callable<String>> tasks = new ArrayList<>(dec.size() + reenc.size());
+                dec.forEach(v -> tasks.add(() -> decrypt(v)));
+                reenc.forEach(v -> tasks.add(() -> reencrypt(v)));
+                pool.invokeAll(tasks);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        logger.info("   -> [CREDENTIAL] Giải mã trước {} user + {} pass trong {} ms ({} luồng)",
+                dec.size(), reenc.size(), (System.nanoTime() - start) / 1_000_000, workers);
+    }
+
+    private String cached(Map<String, Optional<String>> cache, String text, java.util.function.UnaryOperator<String> fn) {
+        if (text == null || maxEntries == 0) return fn.apply(text);
+        Optional<String> hit = cache.get(text);
+        if (hit != null) return hit.orElse(null);
+        String value = fn.apply(text);
+        // Đầy thì vẫn trả kết quả, chỉ không nhớ thêm
+        if (cache.size() < maxEntries) cache.putIfAbsent(text, Optional.ofNullable(value));
+        return value;
+    }
+}
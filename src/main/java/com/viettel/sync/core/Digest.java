@@ -0,0 +1,101 @@
+package com.viettel.sync.core;
+
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Digest nội dung ổn định giữa các lần chạy và giữa các JVM (FNV-1a 64 bit, không dùng hashCode).
+ * Các tập dòng được băm không phụ thuộc thứ tự (băm từng dòng, sắp xếp rồi gộp) vì thứ tự đọc từ DB không cố định.
+ */
+public final class Digest {
+    static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long h = FNV_OFFSET;
+
+    public Digest add(Object value) {
+        h = mixValue(h, value);
+        return this;
+    }
+
+    /** Tập dòng có RowMapper (bảng @Table), bỏ qua các cột ignoreColumns */
+    public <T> Digest addRows(RowMapper<T> mapper, Collection<T> rows, Set<String> ignoreColumns) {
+        return addSorted(rows.stream().mapToLong(r -> RowDiff.contentHash(mapper, r, ignoreColumns)).toArray());
+    }
+
+    /** Tập record bất kỳ (VD: DTO đọc từ câu join), băm theo thứ tự component */
+    public Digest addRecords(Collection<? extends Record> rows) {
+        long[] hashes = new long[rows.size()];
+        int i = 0;
+        for (Record row : rows) {
+            long rh = FNV_OFFSET;
+            for (RecordComponent c : row.getClass().getRecordComponents()) {
+                try {
+                    rh = mixValue(rh, c.getAccessor().invoke(row));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Không đọc được " + row.getClass().getSimpleName() + "." + c.getName(), e);
+                }
+            }
+            hashes[i++] = rh;
+        }
+        return addSorted(hashes);
+    }
+
+    /** Tập giá trị đơn (ID, tên...) */
+    public Digest addUnordered(Collection<?> values) {
+        return addSorted(values.stream().mapToLong(v -> mixValue(FNV_OFFSET, v)).toArray());
+    }
+
+    /** Tập ID, cùng kết quả với addUnordered của tập Long tương ứng */
+    public Digest addUnordered(LongSet values) {
+        return addSorted(values.stream().map(v -> mixLong(mixByte(FNV_OFFSET, (byte) 1), v)).toArray());
+    }
+
+    private Digest addSorted(long[] hashes) {
+        Arrays.sort(hashes);
+        h = mixLong(mixByte(h, (byte) 4), hashes.length);
+        for (long x : hashes) h = mixLong(h, x);
+        return this;
+    }
+
+    public String hex() {
+        return String.format("%016x", h);
+    }
+
+    /**
+     * Chuẩn hóa theo ngữ nghĩa Oracle: chuỗi rỗng = NULL; mỗi giá trị có tag kiểu + dấu phân cách
+     * để ("ab", "c") và ("a", "bc") ra hash khác nhau
+     */
+    static long mixValue(long h, Object v) {
+        if (v instanceof String str && str.isEmpty()) v = null;
+        if (v == null) return mixByte(h, (byte) 0);
+        if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            Number n = (Number) v;
+            h = mixByte(h, (byte) 1);
+            return mixLong(h, n.longValue());
+        }
+        if (v instanceof Timestamp ts) {
+            h = mixByte(h, (byte) 2);
+            h = mixLong(h, ts.getTime());
+            return mixLong(h, ts.getNanos());
+        }
+        h = mixByte(h, (byte) 3);
+        for (byte b : v.toString().getBytes(StandardCharsets.UTF_8)) h = mixByte(h, b);
+        return mixByte(h, (byte) 0xFF);
+    }
+
+    private static long mixLong(long h, long v) {
+        for (int i = 0; i < 8; i++) {
+            h = mixByte(h, (byte) (v >>> (i * 8)));
+        }
+        return h;
+    }
+
+    private static long mixByte(long h, byte b) {
+        return (h ^ (b & 0xff)) * FNV_PRIME;
+    }
+}
@@ -1,19 +1,38 @@
 package com.viettel.sync.core;
 
-import com.viettel.sync.core.Annotations.*;
+import com.viettel.sync.core.BatchPolicy.Op;
+import com.viettel.sync.core.RepositoryOptions.DeleteMode;
+import oracle.jdbc.OracleConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Field;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class GenericRepository<T> {
     private static final Logger logger = LoggerFactory.getLogger(GenericRepository.class);
-    private static final int BATCH_SIZE = 1000;
+    private static final int IN_LIST_MAX = 1000;
+    private static final int ODCI_LIST_MAX = 32767;
+
+    private final RepositoryOptions options;
+
+    public GenericRepository() {
+        this(RepositoryOptions.defaults());
+    }
+
+    public GenericRepository(RepositoryOptions options) {
+        this.options = options;
+    }
 
     /**
      * Xóa theo danh sách ID
@@ -21,49 +40,170 @@ public class GenericRepository<T> {
      */
     public void deleteByIds(Connection conn, String schema, Class<T> clazz, List<Long> idsToDelete) {
         if (idsToDelete == null || idsToDelete.isEmpty()) return;
-        if (!clazz.isAnnotationPresent(Table.class)) return;
-
-        // Lấy tên bảng từ Annotation và gắn Schema vào
-        String rawTableName = clazz.getAnnotation(Table.class).name();
-        String fullTableName = schema + "." + rawTableName;
-
-        // Tìm cột ID
-        String idCol = "ID";
-        for (Field f : clazz.getDeclaredFields()) {
-            if (f.isAnnotationPresent(Id.class)) {
-                Column colAnn = f.getAnnotation(Column.class);
-                if (colAnn != null) {
-                    idCol = colAnn.name();
+        if (RowMappers.find(clazz) == null) return;
+        try {
+            deleteByIdsOrThrow(conn, schema, clazz, idsToDelete);
+        } catch (Exception e) {
+            logger.error("❌ Lỗi Delete bảng " + schema + "." + RowMappers.find(clazz).tableName(), e);
+        }
+    }
+
+    /**
+     * Như {@link #deleteByIds} nhưng ném lỗi ra ngoài thay vì chỉ log: dùng khi bước xóa hỏng
+     * phải làm hỏng cả transaction (VD: ghi theo chunk, bước hoàn tác)
+     */
+    public void deleteByIdsOrThrow(Connection conn, String schema, Class<T> clazz, List<Long> idsToDelete) throws SQLException {
+        if (idsToDelete == null || idsToDelete.isEmpty()) return;
+        RowMapper<T> mapper = RowMappers.find(clazz);
+        if (mapper == null) throw new IllegalArgumentException("Không có RowMapper cho " + clazz.getName());
+
+        // Lấy tên bảng từ mapper và gắn Schema vào
+        String fullTableName = schema + "." + mapper.tableName();
+
+        // Cột ID
+        String idCol = mapper.idColumn() != null ? mapper.idColumn() : "ID";
+
+        DeleteMode mode = resolveDeleteMode(conn);
+        if (mode == DeleteMode.ARRAY) {
+            try {
+                deleteByArray(conn, fullTableName, idCol, idsToDelete);
+            } catch (SQLException e) {
+                // VD: user không có quyền trên SYS.ODCINUMBERLIST -> lùi về IN list
+                logger.warn("⚠️ Không bind được mảng Oracle cho {} ({}), chuyển sang IN list", fullTableName, e.getMessage());
+                mode = DeleteMode.IN_LIST;
+                deleteByInList(conn, fullTableName, idCol, idsToDelete);
+            }
+        } else if (mode == DeleteMode.IN_LIST) {
+            deleteByInList(conn, fullTableName, idCol, idsToDelete);
+        } else {
+            deleteByBatch(conn, mapper.tableName(), fullTableName, idCol, idsToDelete);
+        }
+        logger.info("   -> [DELETE {}] Đã xóa {} dòng rác khỏi bảng {}", mode, idsToDelete.size(), fullTableName);
+    }
+
+    private DeleteMode resolveDeleteMode(Connection conn) throws SQLException {
+        if (options.deleteMode() != DeleteMode.AUTO) return options.deleteMode();
+        return conn.isWrapperFor(OracleConnection.class) ? DeleteMode.ARRAY : DeleteMode.IN_LIST;
+    }
+
+    // 1 câu DELETE cho cả danh sách: bind ID dưới dạng collection Oracle (tối đa 32767 phần tử / mảng)
+    private void deleteByArray(Connection conn, String fullTableName, String idCol, List<Long> ids) throws SQLException {
+        String sql = "DELETE FROM " + fullTableName + " WHERE " + idCol + " IN (SELECT COLUMN_VALUE FROM TABLE(?))";
+        logger.debug("Executing Delete: {}", sql);
+
+        OracleConnection oraConn = conn.unwrap(OracleConnection.class);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int from = 0; from < ids.size(); from += ODCI_LIST_MAX) {
+                List<Long> chunk = ids.subList(from, Math.min(from + ODCI_LIST_MAX, ids.size()));
+                Array arr = oraConn.createOracleArray("SYS.ODCINUMBERLIST", chunk.toArray(new Long[0]));
+                try {
+                    ps.setArray(1, arr);
+                    ps.executeUpdate();
+                } finally {
+                    arr.free();
                 }
-                break;
             }
         }
+    }
+
+    // DELETE ... IN (?, ?, ...) theo khối IN_LIST_MAX ID (giới hạn biểu thức IN của Oracle)
+    private void deleteByInList(Connection conn, String fullTableName, String idCol, List<Long> ids) throws SQLException {
+        String prefix = "DELETE FROM " + fullTableName + " WHERE " + idCol + " IN (";
+        PreparedStatement full = null;
+        try {
+            for (int from = 0; from < ids.size(); from += IN_LIST_MAX) {
+                List<Long> chunk = ids.subList(from, Math.min(from + IN_LIST_MAX, ids.size()));
+                boolean isFull = chunk.size() == IN_LIST_MAX;
+                // Khối đủ kích thước dùng lại 1 statement, khối cuối (lẻ) prepare riêng
+                PreparedStatement ps = isFull && full != null ? full
+                        : conn.prepareStatement(prefix + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")");
+                if (isFull) full = ps;
+                try {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        ps.setLong(i + 1, chunk.get(i));
+                    }
+                    ps.executeUpdate();
+                } finally {
+                    if (!isFull) ps.close();
+                }
+            }
+        } finally {
+            if (full != null) full.close();
+        }
+    }
 
+    private void deleteByBatch(Connection conn, String table, String fullTableName, String idCol, List<Long> ids) throws SQLException {
         String sql = "DELETE FROM " + fullTableName + " WHERE " + idCol + " = ?";
         logger.debug("Executing Delete: {}", sql);
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            int count = 0;
-            for (Long id : idsToDelete) {
-                ps.setLong(1, id);
-                ps.addBatch();
-                if (++count % BATCH_SIZE == 0) ps.executeBatch();
+            executeInBatches(ps, table, Op.DELETE, ids, (p, id) -> p.setLong(1, id));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Binder<E> {
+        void bind(PreparedStatement ps, E item) throws SQLException;
+    }
+
+    /**
+     * addBatch từng dòng, executeBatch mỗi khi đủ kích thước do BatchPolicy quyết định
+     * (kích thước được hỏi lại sau mỗi lần execute để chế độ thích nghi có hiệu lực ngay)
+     */
+    private <E> void executeInBatches(PreparedStatement ps, String table, Op op, List<E> items, Binder<E> binder) throws SQLException {
+        BatchPolicy policy = options.batchPolicy();
+        int size = policy.sizeFor(table, op);
+        int pending = 0;
+        for (E item : items) {
+            binder.bind(ps, item);
+            ps.addBatch();
+            if (++pending >= size) {
+                long start = System.nanoTime();
+                ps.executeBatch();
+                policy.record(table, op, pending, System.nanoTime() - start);
+                pending = 0;
+                size = policy.sizeFor(table, op);
             }
+        }
+        if (pending > 0) {
+            long start = System.nanoTime();
             ps.executeBatch();
-            logger.info("   -> [DELETE] Đã xóa {} dòng rác khỏi bảng {}", idsToDelete.size(), fullTableName);
-        } catch (Exception e) {
-            logger.error("❌ Lỗi Delete bảng " + fullTableName, e);
+            policy.record(table, op, pending, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Đọc toàn bộ bảng, dựng record bằng mapper sinh sẵn
+     */
+    public List<T> selectAll(Connection conn, String schema, Class<T> clazz) throws SQLException {
+        try (Stream<T> rows = stream(conn, schema, clazz, null)) {
+            return rows.collect(Collectors.toList());
         }
     }
 
+    /**
+     * Stream toàn bộ bảng: chỉ SELECT các cột @Column (theo đúng thứ tự mapper nên vị trí cột là 1..n),
+     * fetch size theo app.fetch-size. Phải đóng Stream sau khi dùng.
+     * @param where: điều kiện lọc (không có chữ WHERE), null nếu lấy hết
+     */
+    public Stream<T> stream(Connection conn, String schema, Class<T> clazz, String where) throws SQLException {
+        RowMapper<T> mapper = RowMappers.of(clazz);
+        String sql = "SELECT " + String.join(", ", mapper.columns()) + " FROM " + schema + "." + mapper.tableName()
+                + (where != null ? " WHERE " + where : "");
+
+        int[] pos = new int[mapper.columns().size()];
+        for (int i = 0; i < pos.length; i++) pos[i] = i + 1;
+        return JdbcStreams.stream(conn, sql, options.fetchSize(), rs -> mapper.map(rs, pos));
+    }
+
     /**
      * Xóa sạch bảng (Truncate)
      */
     public void truncate(Connection conn, String schema, Class<T> clazz) {
-        if (!clazz.isAnnotationPresent(Table.class)) return;
+        RowMapper<T> mapper = RowMappers.find(clazz);
+        if (mapper == null) return;
 
-        String rawTableName = clazz.getAnnotation(Table.class).name();
-        String fullTableName = schema + "." + rawTableName;
+        String fullTableName = schema + "." + mapper.tableName();
 
         try (Statement stmt = conn.createStatement()) {
             stmt.executeUpdate("TRUNCATE TABLE " + fullTableName);
@@ -73,63 +213,210 @@ public class GenericRepository<T> {
         }
     }
 
+    /**
+     * Xóa mọi dòng bằng DELETE (khác truncate: là DML, nằm trong transaction hiện tại, rollback được)
+     */
+    public void deleteAll(Connection conn, String schema, Class<T> clazz) {
+        RowMapper<T> mapper = RowMappers.find(clazz);
+        if (mapper == null) return;
+
+        String fullTableName = schema + "." + mapper.tableName();
+
+        try (Statement stmt = conn.createStatement()) {
+            int n = stmt.executeUpdate("DELETE FROM " + fullTableName);
+            logger.info("   -> [DELETE] Đã xóa {} dòng khỏi bảng {}", n, fullTableName);
+        } catch (Exception e) {
+            logger.error("❌ Lỗi Delete bảng " + fullTableName, e);
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Insert danh sách
      */
+    @SuppressWarnings("unchecked")
     public void insertBatch(Connection conn, String schema, List<T> items) {
         if (items == null || items.isEmpty()) return;
 
-        Class<?> clazz = items.get(0).getClass();
-        if (!clazz.isAnnotationPresent(Table.class)) return;
+        RowMapper<T> mapper = RowMappers.find((Class<T>) items.get(0).getClass());
+        if (mapper == null) return;
 
-        String rawTableName = clazz.getAnnotation(Table.class).name();
-        String fullTableName = schema + "." + rawTableName;
+        String fullTableName = schema + "." + mapper.tableName();
 
-        Field[] fields = clazz.getDeclaredFields();
-        StringJoiner cols = new StringJoiner(",");
-        StringJoiner params = new StringJoiner(",");
+        // Câu SQL dựng từ danh sách cột đã sinh sẵn
+        String cols = String.join(",", mapper.columns());
+        String params = String.join(",", Collections.nCopies(mapper.columns().size(), "?"));
+        String sql = "INSERT INTO " + fullTableName + " (" + cols + ") VALUES (" + params + ")";
 
-        // Xây dựng câu SQL động
-        for (Field f : fields) {
-            if (f.isAnnotationPresent(Column.class)) {
-                cols.add(f.getAnnotation(Column.class).name());
-                params.add("?");
-                f.setAccessible(true);
-            }
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            executeInBatches(ps, mapper.tableName(), Op.INSERT, items, (p, item) -> mapper.bind(p, item, 0));
+            logger.info("   -> [INSERT] Đã chèn {} dòng vào bảng {}", items.size(), fullTableName);
+        } catch (Exception e) {
+            logger.error("❌ Lỗi Insert bảng " + fullTableName, e);
+            // Ném lỗi ra ngoài để Service biết mà Rollback nếu cần
+            throw new RuntimeException(e);
         }
+    }
 
-        String sql = "INSERT INTO " + fullTableName + " (" + cols + ") VALUES (" + params + ")";
+    /**
+     * Insert direct-path (hint APPEND_VALUES): ghi thẳng block mới trên HWM, gần như không sinh undo.
+     * Chỉ nên dùng khi bảng vừa rỗng. Lưu ý:
+     * - Toàn bộ danh sách đi trong 1 lần executeBatch: sau 1 câu direct-path, chính transaction này
+     *   không được đọc/ghi lại bảng (ORA-12838) cho tới khi commit.
+     * - Block giải phóng bởi DELETE không được tái sử dụng.
+     */
+    @SuppressWarnings("unchecked")
+    public void insertDirectPath(Connection conn, String schema, List<T> items) {
+        if (items == null || items.isEmpty()) return;
+
+        RowMapper<T> mapper = RowMappers.find((Class<T>) items.get(0).getClass());
+        if (mapper == null) return;
+
+        String fullTableName = schema + "." + mapper.tableName();
+
+        String cols = String.join(",", mapper.columns());
+        String params = String.join(",", Collections.nCopies(mapper.columns().size(), "?"));
+        String sql = "INSERT /*+ APPEND_VALUES */ INTO " + fullTableName + " (" + cols + ") VALUES (" + params + ")";
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            int count = 0;
+            long start = System.nanoTime();
             for (T item : items) {
-                int idx = 1;
-                for (Field f : fields) {
-                    if (f.isAnnotationPresent(Column.class)) {
-                        ps.setObject(idx++, f.get(item));
-                    }
-                }
+                mapper.bind(ps, item, 0);
                 ps.addBatch();
-                if (++count % BATCH_SIZE == 0) ps.executeBatch();
             }
             ps.executeBatch();
-            logger.info("   -> [INSERT] Đã chèn {} dòng vào bảng {}", items.size(), fullTableName);
+            long nanos = System.nanoTime() - start;
+            logger.info("   -> [INSERT DIRECT-PATH] Đã chèn {} dòng vào bảng {} trong {} ms ({} dòng/s)",
+                    items.size(), fullTableName, nanos / 1_000_000,
+                    nanos > 0 ? Math.round(items.size() * 1_000_000_000.0 / nanos) : items.size());
         } catch (Exception e) {
-            logger.error("❌ Lỗi Insert bảng " + fullTableName, e);
-            // Ném lỗi ra ngoài để Service biết mà Rollback nếu cần
+            logger.error("❌ Lỗi Insert direct-path bảng " + fullTableName, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Xóa theo nội dung (bảng không có @Id, VD: D_CLEAN_FOLDER): mỗi dòng 1 câu DELETE khớp mọi cột
+     * (trừ ignoreColumns), DECODE để so sánh được cả NULL. Các dòng trùng nội dung bị xóa cùng lúc.
+     */
+    @SuppressWarnings("unchecked")
+    public void deleteMatching(Connection conn, String schema, List<T> items, Set<String> ignoreColumns) {
+        if (items == null || items.isEmpty()) return;
+
+        RowMapper<T> mapper = RowMappers.find((Class<T>) items.get(0).getClass());
+        if (mapper == null) return;
+
+        String fullTableName = schema + "." + mapper.tableName();
+        List<Integer> matchIdx = new ArrayList<>();
+        StringJoiner where = new StringJoiner(" AND ");
+        for (int i = 0; i < mapper.columns().size(); i++) {
+            String col = mapper.columns().get(i);
+            if (ignoreColumns != null && containsIgnoreCase(ignoreColumns, col)) continue;
+            matchIdx.add(i);
+            where.add("DECODE(" + col + ", ?, 1, 0) = 1");
+        }
+        String sql = "DELETE FROM " + fullTableName + " WHERE " + where;
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            executeInBatches(ps, mapper.tableName(), Op.DELETE, items, (p, item) -> {
+                Object[] values = mapper.values(item);
+                for (int i = 0; i < matchIdx.size(); i++) p.setObject(i + 1, values[matchIdx.get(i)]);
+            });
+            logger.info("   -> [DELETE] Đã xóa theo nội dung {} dòng khỏi bảng {}", items.size(), fullTableName);
+        } catch (Exception e) {
+            logger.error("❌ Lỗi Delete bảng " + fullTableName, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Upsert danh sách bằng MERGE theo cột @Id (luôn UPDATE khi trùng ID)
+     */
+    public void upsertBatch(Connection conn, String schema, List<T> items) {
+        upsertBatch(conn, schema, items, null);
+    }
+
+    /**
+     * Upsert danh sách bằng MERGE theo cột @Id.
+     * @param ignoreOnCompare: nếu khác null, chỉ UPDATE khi có ít nhất 1 cột (ngoài ID và các cột này) thay đổi;
+     *                         dòng không đổi sẽ không bị ghi lại (không sinh redo/undo, không đụng index)
+     */
+    @SuppressWarnings("unchecked")
+    public void upsertBatch(Connection conn, String schema, List<T> items, Set<String> ignoreOnCompare) {
+        if (items == null || items.isEmpty()) return;
+
+        RowMapper<T> mapper = RowMappers.find((Class<T>) items.get(0).getClass());
+        if (mapper == null) return;
+
+        String fullTableName = schema + "." + mapper.tableName();
+        if (mapper.idColumn() == null) {
+            throw new IllegalArgumentException("Bảng " + fullTableName + " không có @Id, không thể MERGE");
+        }
+
+        String sql = buildMergeSql(fullTableName, mapper.columns(), mapper.idColumn(), ignoreOnCompare);
+        logger.debug("Executing Merge: {}", sql);
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            executeInBatches(ps, mapper.tableName(), Op.MERGE, items, (p, item) -> mapper.bind(p, item, 0));
+            logger.info("   -> [MERGE] Đã upsert {} dòng vào bảng {}", items.size(), fullTableName);
+        } catch (Exception e) {
+            logger.error("❌ Lỗi Merge bảng " + fullTableName, e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * MERGE INTO t tgt USING (SELECT ? AS C1, ? AS C2 ... FROM DUAL) src ON (tgt.ID = src.ID)
+     * WHEN MATCHED THEN UPDATE SET ... [WHERE DECODE(tgt.Cx, src.Cx, 0, 1) = 1 OR ...]
+     * WHEN NOT MATCHED THEN INSERT (...) VALUES (...)
+     * DECODE coi NULL = NULL nên so sánh được cả cột null.
+     */
+    static String buildMergeSql(String fullTableName, List<String> columns, String idCol, Set<String> ignoreOnCompare) {
+        StringJoiner using = new StringJoiner(", ");
+        StringJoiner insertCols = new StringJoiner(", ");
+        StringJoiner insertVals = new StringJoiner(", ");
+        StringJoiner updates = new StringJoiner(", ");
+        StringJoiner changed = new StringJoiner(" OR ");
+
+        for (String col : columns) {
+            using.add("? AS " + col);
+            insertCols.add(col);
+            insertVals.add("src." + col);
+            if (col.equalsIgnoreCase(idCol)) continue;
+            updates.add("tgt." + col + " = src." + col);
+            if (ignoreOnCompare != null && !containsIgnoreCase(ignoreOnCompare, col)) {
+                changed.add("DECODE(tgt." + col + ", src." + col + ", 0, 1) = 1");
+            }
+        }
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("MERGE INTO ").append(fullTableName).append(" tgt ");
+        sql.append("USING (SELECT ").append(using).append(" FROM DUAL) src ");
+        sql.append("ON (tgt.").append(idCol).append(" = src.").append(idCol).append(") ");
+        if (updates.length() > 0) {
+            sql.append("WHEN MATCHED THEN UPDATE SET ").append(updates).append(" ");
+            if (changed.length() > 0) sql.append("WHERE ").append(changed).append(" ");
+        }
+        sql.append("WHEN NOT MATCHED THEN INSERT (").append(insertCols).append(") VALUES (").append(insertVals).append(")");
+        return sql.toString();
+    }
+
+    private static boolean containsIgnoreCase(Set<String> set, String value) {
+        for (String s : set) {
+            if (s.equalsIgnoreCase(value)) return true;
+        }
+        return false;
+    }
+
     /**
      * Cập nhật Connection Name & Driver Name (Dành riêng cho bảng Connection)
      * Đã sửa lỗi Hardcode tên bảng và thiếu schema.
      */
     public void updateConnectionInfo(Connection conn, String schema, Class<T> clazz, Long id, String newName, String newDriver) {
-        if (!clazz.isAnnotationPresent(Table.class)) return;
+        RowMapper<T> mapper = RowMappers.find(clazz);
+        if (mapper == null) return;
 
-        String rawTableName = clazz.getAnnotation(Table.class).name();
-        String fullTableName = schema + "." + rawTableName;
+        String fullTableName = schema + "." + mapper.tableName();
 
         // SQL động: update schema.table set ...
         String sql = "UPDATE " + fullTableName + " SET CONNECTION_NAME = ?, DRIVER_NAME = ? WHERE ID = ?";
@@ -0,0 +1,26 @@
+package com.viettel.sync.core;
+
+/**
+ * Phần dùng chung của {@link LongSet} và {@link LongObjectMap}: kích thước bảng (lũy thừa của 2, tải tối đa 1/2)
+ * và hàm trộn bit (ID tuần tự từ sequence dồn vào bit thấp -> trộn để rải đều các slot).
+ */
+final class Hashing {
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private Hashing() {}
+
+    static int capacityFor(int expected) {
+        long needed = Math.max(4L, (long) Math.max(expected, 0) * 2);
+        if (needed > MAX_CAPACITY) return MAX_CAPACITY;
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    static int resizeAt(int capacity) {
+        return capacity >= MAX_CAPACITY ? Integer.MAX_VALUE : capacity / 2;
+    }
+
+    static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,65 @@
+package com.viettel.sync.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cấp ID cho các dòng tự sinh theo khối: mỗi lần hết khối mới giữ thêm {@code blockSize} ID từ {@link BlockSource}
+ * (VD: 1 lệnh UPDATE trên bảng cấp phát), các ID trong khối được cấp từ bộ nhớ bằng 1 phép tăng nguyên tử, không khóa.
+ * Dùng chung an toàn giữa nhiều luồng; ID không dùng hết của khối (hoặc của transaction bị rollback) bị bỏ qua, không cấp lại.
+ *
+ * floor: ID lớn nhất đã có sẵn trong dữ liệu sẽ ghi (các dòng giữ nguyên / copy từ Source),
+ * ID được cấp luôn lớn hơn floor để không trùng với các dòng đó.
+ */
+public final class IdAllocator {
+
+    @FunctionalInterface
+    public interface BlockSource {
+        /**
+         * Giữ 1 khối ID liên tiếp [start, start + size) với start > floor
+         * @return start
+         */
+        long reserve(long floor, int size) throws Exception;
+    }
+
+    private record Block(AtomicLong next, long end) {}
+
+    private static final Block EMPTY = new Block(new AtomicLong(0), 0);
+
+    private final BlockSource source;
+    private final int blockSize;
+    private volatile Block block = EMPTY;
+
+    public IdAllocator(BlockSource source, int blockSize) {
+        this.source = source;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Cấp phát trong bộ nhớ (không có DB): mỗi instance đếm tiếp từ floor + 1.
+     * Chỉ dùng cho lệnh plan offline (không ghi DB): các lần chạy chồng nhau có thể nhận trùng ID.
+     */
+    public static IdAllocator inMemory() {
+        AtomicLong last = new AtomicLong(0);
+        return new IdAllocator((floor, size) -> last.updateAndGet(prev -> Math.max(prev, floor) + size) - size + 1, 1024);
+    }
+
+    public long next(long floor) throws Exception {
+        while (true) {
+            Block b = block;
+            long id = b.next().getAndIncrement();
+            if (id < b.end() && id > floor) return id;
+            refill(b, floor);
+        }
+    }
+
+    // Chỉ 1 luồng giữ khối mới, các luồng khác chờ rồi lấy từ khối đó
+    private synchronized void refill(Block exhausted, long floor) throws Exception {
+        Block current = block;
+        if (current != exhausted && current.next().get() < current.end() && current.next().get() > floor) return;
+        long start = source.reserve(floor, blockSize);
+        if (start <= floor) {
+            throw new IllegalStateException("Khối ID bắt đầu từ " + start + " không lớn hơn floor " + floor);
+        }
+        block = new Block(new AtomicLong(start), start + blockSize);
+    }
+}
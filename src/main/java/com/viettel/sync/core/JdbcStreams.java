@@ -0,0 +1,67 @@
+package com.viettel.sync.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stream đọc dần từ ResultSet (không gom hết vào List).
+ * Stream giữ PreparedStatement/ResultSet mở cho tới khi close -> luôn dùng trong try-with-resources.
+ */
+public final class JdbcStreams {
+
+    @FunctionalInterface
+    public interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private JdbcStreams() {}
+
+    /**
+     * @param fetchSize: số dòng driver lấy mỗi round trip (<= 0: để mặc định của driver)
+     */
+    public static <T> Stream<T> stream(Connection conn, String sql, int fetchSize, RowReader<T> reader) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql);
+        ResultSet rs;
+        try {
+            if (fetchSize > 0) ps.setFetchSize(fetchSize);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            ps.close();
+            throw e;
+        }
+
+        Spliterator<T> split = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) return false;
+                    action.accept(reader.read(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(split, false).onClose(() -> {
+            try {
+                rs.close();
+            } catch (SQLException ignored) {
+                // đóng statement bên dưới vẫn giải phóng cursor
+            } finally {
+                try {
+                    ps.close();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+}
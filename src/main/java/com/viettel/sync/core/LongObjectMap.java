@@ -0,0 +1,138 @@
+package com.viettel.sync.core;
+
+/**
+ * Map khóa long -> V không boxing khóa, cùng cách tổ chức với {@link LongSet} (địa chỉ mở, dò tuyến tính).
+ * Giá trị được phép null (containsKey phân biệt "có khóa, giá trị null" với "không có khóa").
+ * Không hỗ trợ xóa, không thread-safe.
+ */
+public final class LongObjectMap<V> {
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private long[] keys;
+    private Object[] values;
+    private boolean hasZero;
+    private V zeroValue;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    public LongObjectMap(int expected) {
+        allocate(Hashing.capacityFor(expected));
+    }
+
+    /** @return giá trị cũ, null nếu chưa có khóa */
+    public V put(long key, V value) {
+        if (key == 0) {
+            V old = zeroValue;
+            if (!hasZero) size++;
+            hasZero = true;
+            zeroValue = value;
+            return old;
+        }
+        int i = find(key);
+        if (keys[i] == key) {
+            V old = valueAt(i);
+            values[i] = value;
+            return old;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) rehash();
+        return null;
+    }
+
+    /** Chỉ ghi khi chưa có khóa (giữ giá trị đầu tiên); @return giá trị đang có, null nếu vừa ghi */
+    public V putIfAbsent(long key, V value) {
+        if (containsKey(key)) return get(key);
+        put(key, value);
+        return null;
+    }
+
+    public V get(long key) {
+        if (key == 0) return zeroValue;
+        int i = find(key);
+        return keys[i] == key ? valueAt(i) : null;
+    }
+
+    /** Khóa đọc từ cột có thể NULL: null -> null (như HashMap không chứa khóa null) */
+    public V get(Long key) {
+        return key == null ? null : get(key.longValue());
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        return containsKey(key) ? get(key) : defaultValue;
+    }
+
+    public V getOrDefault(Long key, V defaultValue) {
+        return key == null ? defaultValue : getOrDefault(key.longValue(), defaultValue);
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) return hasZero;
+        return keys[find(key)] == key;
+    }
+
+    public boolean containsKey(Long key) {
+        return key != null && containsKey(key.longValue());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(EntryConsumer<? super V> action) {
+        if (hasZero) action.accept(0, zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) action.accept(keys[i], valueAt(i));
+        }
+    }
+
+    public LongSet keySet() {
+        LongSet set = new LongSet(size);
+        forEach((k, v) -> set.add(k));
+        return set;
+    }
+
+    // Slot chứa key, hoặc slot trống đầu tiên trên đường dò
+    private int find(long key) {
+        int i = Hashing.slot(key, mask);
+        while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int i) {
+        return (V) values[i];
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = Hashing.resizeAt(capacity);
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == 0) continue;
+            int i = find(oldKeys[j]);
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
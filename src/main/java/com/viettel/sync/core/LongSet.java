@@ -0,0 +1,139 @@
+package com.viettel.sync.core;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * Tập ID kiểu long không boxing: bảng băm địa chỉ mở (dò tuyến tính) trên mảng long[].
+ * Dùng cho các tập ID (Fix, Safe, đã xử lý...) dựng 1 lần rồi tra cứu nhiều lần trong vòng lặp,
+ * mỗi phần tử chỉ tốn 8-16 byte thay vì 1 Long + 1 node HashMap. Không hỗ trợ xóa, không thread-safe.
+ */
+public final class LongSet {
+    // Slot trống = 0, giá trị 0 thật giữ ở cờ riêng
+    private long[] keys;
+    private boolean hasZero;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongSet() {
+        this(16);
+    }
+
+    public LongSet(int expected) {
+        allocate(Hashing.capacityFor(expected));
+    }
+
+    public LongSet(LongSet other) {
+        this(other.size);
+        addAll(other);
+    }
+
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int i = Hashing.slot(value, mask);
+        while (keys[i] != 0) {
+            if (keys[i] == value) return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = value;
+        if (++size >= resizeAt) rehash();
+        return true;
+    }
+
+    public void addAll(LongSet other) {
+        other.forEach(this::add);
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) return hasZero;
+        int i = Hashing.slot(value, mask);
+        while (keys[i] != 0) {
+            if (keys[i] == value) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /** ID đọc từ cột có thể NULL: null -> false (như HashSet.contains(null) trên tập không chứa null) */
+    public boolean contains(Long value) {
+        return value != null && contains(value.longValue());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (hasZero) action.accept(0);
+        for (long k : keys) {
+            if (k != 0) action.accept(k);
+        }
+    }
+
+    public long[] toArray() {
+        long[] out = new long[size];
+        int n = 0;
+        if (hasZero) out[n++] = 0;
+        for (long k : keys) {
+            if (k != 0) out[n++] = k;
+        }
+        return out;
+    }
+
+    public LongStream stream() {
+        return Arrays.stream(toArray());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LongSet other) || other.size != size) return false;
+        for (long k : toArray()) {
+            if (!other.contains(k)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (long k : toArray()) h += Long.hashCode(k);
+        return h;
+    }
+
+    /** Sắp xếp tăng dần cho log dễ đọc */
+    @Override
+    public String toString() {
+        long[] values = toArray();
+        Arrays.sort(values);
+        return Arrays.toString(values);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = Hashing.resizeAt(capacity);
+    }
+
+    private void rehash() {
+        long[] old = keys;
+        allocate(old.length * 2);
+        for (long k : old) {
+            if (k == 0) continue;
+            int i = Hashing.slot(k, mask);
+            while (keys[i] != 0) i = (i + 1) & mask;
+            keys[i] = k;
+        }
+    }
+}
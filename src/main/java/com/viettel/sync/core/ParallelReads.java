@@ -0,0 +1,96 @@
+package com.viettel.sync.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Chạy các truy vấn đọc độc lập song song trên virtual thread, dùng chung tối đa {@code maxConnections} kết nối.
+ * Kết nối được mở dần khi cần (việc mở kết nối cũng chạy song song) và đóng hết ở {@link #close()}.
+ *
+ * Thời gian đọc chủ yếu là chờ round trip tới DB nên virtual thread đủ dùng; số kết nối mới là giới hạn thực.
+ */
+public final class ParallelReads implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelReads.class);
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Read<T> {
+        T read(Connection conn) throws Exception;
+    }
+
+    private final ConnectionFactory factory;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private final List<Connection> opened = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ParallelReads(int maxConnections, ConnectionFactory factory) {
+        this.factory = factory;
+        this.permits = new Semaphore(Math.max(1, maxConnections));
+    }
+
+    /**
+     * @param name: tên hiển thị trong log
+     */
+    public <T> Future<T> submit(String name, Read<T> read) {
+        return executor.submit(() -> {
+            permits.acquire();
+            Connection conn = idle.poll();
+            try {
+                if (conn == null) {
+                    conn = factory.open();
+                    opened.add(conn);
+                }
+                long start = System.nanoTime();
+                T result = read.read(conn);
+                logger.debug("   [READ] {} xong trong {} ms", name, (System.nanoTime() - start) / 1_000_000);
+                return result;
+            } finally {
+                if (conn != null) idle.add(conn);
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Chờ kết quả, ném lại lỗi gốc của truy vấn (thay vì ExecutionException)
+     */
+    public static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Chờ các truy vấn còn chạy rồi đóng toàn bộ kết nối đọc
+     */
+    @Override
+    public void close() {
+        executor.close();
+        synchronized (opened) {
+            for (Connection conn : opened) {
+                try {
+                    conn.rollback(); // kết thúc transaction read-only
+                    conn.close();
+                } catch (SQLException e) {
+                    logger.warn("Lỗi khi đóng kết nối đọc", e);
+                }
+            }
+            opened.clear();
+        }
+    }
+}
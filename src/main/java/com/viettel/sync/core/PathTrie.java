@@ -0,0 +1,73 @@
+package com.viettel.sync.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cây tiền tố theo từng cấp thư mục (segment ngăn bởi '/') cho tra cứu "path dài nhất là tiền tố của path cần tìm".
+ * Thời gian tra cứu tỉ lệ với độ sâu path, không phụ thuộc số path đã nạp; kết quả không phụ thuộc thứ tự nạp.
+ * So khớp nguyên segment: /data/raw/src1 là tiền tố của /data/raw/src1/x nhưng KHÔNG phải của /data/raw/src10.
+ * Segment rỗng (dấu / ở đầu, cuối hoặc //) bị bỏ qua. Không thread-safe khi ghi, đọc đồng thời an toàn sau khi nạp xong.
+ */
+public final class PathTrie<V> {
+
+    private static final class Node<V> {
+        private Map<String, Node<V>> children;
+        private boolean terminal;
+        private V value;
+    }
+
+    private final Node<V> root = new Node<>();
+    private int size;
+
+    /** @return giá trị cũ của path, null nếu chưa có */
+    public V put(String path, V value) {
+        Node<V> node = root;
+        int i = 0;
+        int n = path.length();
+        while (i < n) {
+            int end = segmentEnd(path, i);
+            if (end > i) {
+                if (node.children == null) node.children = new HashMap<>(4);
+                node = node.children.computeIfAbsent(path.substring(i, end), k -> new Node<>());
+            }
+            i = end + 1;
+        }
+        V old = node.value;
+        if (!node.terminal) size++;
+        node.terminal = true;
+        node.value = value;
+        return old;
+    }
+
+    /** Giá trị của path dài nhất đã nạp là tiền tố (theo segment) của path, null nếu không có */
+    public V longestPrefix(String path) {
+        Node<V> node = root;
+        V best = root.terminal ? root.value : null;
+        int i = 0;
+        int n = path.length();
+        while (i < n && node.children != null) {
+            int end = segmentEnd(path, i);
+            if (end > i) {
+                node = node.children.get(path.substring(i, end));
+                if (node == null) break;
+                if (node.terminal) best = node.value;
+            }
+            i = end + 1;
+        }
+        return best;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static int segmentEnd(String path, int from) {
+        int slash = path.indexOf('/', from);
+        return slash < 0 ? path.length() : slash;
+    }
+}
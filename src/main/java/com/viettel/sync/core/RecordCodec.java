@@ -0,0 +1,138 @@
+package com.viettel.sync.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ghi/đọc danh sách record dạng nhị phân gọn (theo thứ tự component của record).
+ * Hỗ trợ các kiểu dùng trong model: Long, Integer, String, Timestamp (và null).
+ * Mỗi danh sách có phần đầu ghi tên các component để phát hiện file cũ không khớp model hiện tại.
+ */
+public final class RecordCodec {
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte STRING = 3;
+    private static final byte TIMESTAMP = 4;
+
+    private RecordCodec() {}
+
+    public static <T extends Record> void writeList(DataOutputStream out, Class<T> type, List<T> rows) throws IOException {
+        RecordComponent[] comps = type.getRecordComponents();
+        out.writeInt(comps.length);
+        for (RecordComponent c : comps) writeString(out, c.getName());
+
+        out.writeInt(rows.size());
+        try {
+            for (T row : rows) {
+                for (RecordComponent c : comps) writeValue(out, c.getAccessor().invoke(row));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Không đọc được giá trị record " + type.getSimpleName(), e);
+        }
+    }
+
+    public static <T extends Record> List<T> readList(DataInputStream in, Class<T> type) throws IOException {
+        RecordComponent[] comps = type.getRecordComponents();
+        int n = in.readInt();
+        if (n != comps.length) {
+            throw new IOException("Cấu trúc " + type.getSimpleName() + " trong file (" + n + " trường) khác model hiện tại (" + comps.length + ")");
+        }
+        Class<?>[] paramTypes = new Class<?>[comps.length];
+        for (int i = 0; i < comps.length; i++) {
+            String name = readString(in);
+            if (!comps[i].getName().equals(name)) {
+                throw new IOException("Trường thứ " + (i + 1) + " của " + type.getSimpleName() + " trong file là '" + name
+                        + "', model hiện tại là '" + comps[i].getName() + "'");
+            }
+            paramTypes[i] = comps[i].getType();
+        }
+
+        try {
+            Constructor<T> ctor = type.getDeclaredConstructor(paramTypes);
+            int count = in.readInt();
+            List<T> rows = new ArrayList<>(count);
+            Object[] args = new Object[comps.length];
+            for (int r = 0; r < count; r++) {
+                for (int i = 0; i < args.length; i++) args[i] = readValue(in);
+                rows.add(ctor.newInstance(args));
+            }
+            return rows;
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Không dựng được record " + type.getSimpleName(), e);
+        }
+    }
+
+    public static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String v : values) writeValue(out, v);
+    }
+
+    public static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) values.add((String) readValue(in));
+        return values;
+    }
+
+    /** Chuỗi UTF-8 có độ dài int (không giới hạn 64KB như writeUTF, SQL_COMMAND có thể rất dài) */
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeValue(DataOutputStream out, Object v) throws IOException {
+        if (v == null) {
+            out.writeByte(NULL);
+        } else if (v instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (v instanceof Integer i) {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        } else if (v instanceof String s) {
+            out.writeByte(STRING);
+            writeString(out, s);
+        } else if (v instanceof Timestamp ts) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(ts.getTime());
+            out.writeInt(ts.getNanos());
+        } else {
+            throw new IOException("Kiểu chưa hỗ trợ trong snapshot: " + v.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case LONG:
+                return in.readLong();
+            case INTEGER:
+                return in.readInt();
+            case STRING:
+                return readString(in);
+            case TIMESTAMP:
+                Timestamp ts = new Timestamp(in.readLong());
+                ts.setNanos(in.readInt());
+                return ts;
+            default:
+                throw new IOException("File snapshot hỏng: kiểu dữ liệu không hợp lệ " + tag);
+        }
+    }
+}
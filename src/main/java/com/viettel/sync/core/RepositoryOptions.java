@@ -0,0 +1,23 @@
+package com.viettel.sync.core;
+
+/**
+ * Tùy chọn ghi cho GenericRepository (đọc từ application.properties qua AppConfigLoader)
+ */
+public record RepositoryOptions(
+        DeleteMode deleteMode,
+        BatchPolicy batchPolicy,
+        int fetchSize
+) {
+    /**
+     * Cách xóa theo danh sách ID
+     * AUTO    : ARRAY nếu là Oracle, ngược lại IN_LIST
+     * ARRAY   : 1 câu DELETE ... IN (SELECT COLUMN_VALUE FROM TABLE(?)) bind mảng Oracle
+     * IN_LIST : DELETE ... IN (?, ?, ...) theo từng khối 1000 ID
+     * BATCH   : mỗi ID 1 dòng batch DELETE ... WHERE ID = ? (cách cũ)
+     */
+    public enum DeleteMode { AUTO, ARRAY, IN_LIST, BATCH }
+
+    public static RepositoryOptions defaults() {
+        return new RepositoryOptions(DeleteMode.AUTO, BatchPolicy.fixed(1000), 500);
+    }
+}
@@ -0,0 +1,93 @@
+package com.viettel.sync.core;
+
+import java.util.*;
+
+/**
+ * So sánh danh sách mong muốn (sau transform) với dữ liệu Target hiện tại theo hash nội dung các cột @Column.
+ * Hash ổn định giữa các lần chạy (FNV-1a 64 bit trên giá trị đã chuẩn hóa, xem {@link Digest}).
+ */
+public final class RowDiff {
+    private RowDiff() {}
+
+    /**
+     * @param inserts: có trong desired, chưa có ID ở Target
+     * @param updates: cùng ID nhưng nội dung khác
+     * @param deleteIds: có ở Target (phần được phép xóa) nhưng không còn trong desired
+     * @param unchanged: số dòng giữ nguyên, không cần ghi
+     */
+    public record Result<T>(List<T> inserts, List<T> updates, List<Object> deleteIds, int unchanged) {
+        public boolean isEmpty() {
+            return inserts.isEmpty() && updates.isEmpty() && deleteIds.isEmpty();
+        }
+    }
+
+    /**
+     * Diff theo cột @Id.
+     * @param current: các dòng Target được phép thay đổi (đã loại phần Safe)
+     * @param ignoreColumns: cột bỏ qua khi so sánh (VD: INSERT_DATE)
+     */
+    public static <T> Result<T> diff(RowMapper<T> mapper, List<T> desired, List<T> current, Set<String> ignoreColumns) {
+        boolean[] ignored = ignoredMask(mapper, ignoreColumns);
+
+        Map<Object, Long> currentHashes = new HashMap<>(current.size() * 2);
+        for (T row : current) {
+            currentHashes.put(mapper.idOf(row), contentHash(mapper, row, ignored));
+        }
+
+        List<T> inserts = new ArrayList<>();
+        List<T> updates = new ArrayList<>();
+        Set<Object> seen = new HashSet<>(desired.size() * 2);
+        int unchanged = 0;
+        for (T row : desired) {
+            Object id = mapper.idOf(row);
+            if (!seen.add(id)) continue;
+            Long old = currentHashes.get(id);
+            if (old == null) inserts.add(row);
+            else if (old != contentHash(mapper, row, ignored)) updates.add(row);
+            else unchanged++;
+        }
+
+        List<Object> deleteIds = new ArrayList<>();
+        for (Object id : currentHashes.keySet()) {
+            if (!seen.contains(id)) deleteIds.add(id);
+        }
+        return new Result<>(inserts, updates, deleteIds, unchanged);
+    }
+
+    /**
+     * So sánh 2 tập không có khóa (VD: D_CLEAN_FOLDER) như multiset hash nội dung
+     */
+    public static <T> boolean sameContent(RowMapper<T> mapper, List<T> a, List<T> b, Set<String> ignoreColumns) {
+        if (a.size() != b.size()) return false;
+        boolean[] ignored = ignoredMask(mapper, ignoreColumns);
+        long[] ha = a.stream().mapToLong(r -> contentHash(mapper, r, ignored)).sorted().toArray();
+        long[] hb = b.stream().mapToLong(r -> contentHash(mapper, r, ignored)).sorted().toArray();
+        return Arrays.equals(ha, hb);
+    }
+
+    public static <T> long contentHash(RowMapper<T> mapper, T row, Set<String> ignoreColumns) {
+        return contentHash(mapper, row, ignoredMask(mapper, ignoreColumns));
+    }
+
+    private static <T> long contentHash(RowMapper<T> mapper, T row, boolean[] ignored) {
+        Object[] values = mapper.values(row);
+        long h = Digest.FNV_OFFSET;
+        for (int i = 0; i < values.length; i++) {
+            if (ignored[i]) continue;
+            h = Digest.mixValue(h, values[i]);
+        }
+        return h;
+    }
+
+    private static boolean[] ignoredMask(RowMapper<?> mapper, Set<String> ignoreColumns) {
+        List<String> cols = mapper.columns();
+        boolean[] ignored = new boolean[cols.size()];
+        if (ignoreColumns == null) return ignored;
+        for (int i = 0; i < cols.size(); i++) {
+            for (String ig : ignoreColumns) {
+                if (ig.equalsIgnoreCase(cols.get(i))) ignored[i] = true;
+            }
+        }
+        return ignored;
+    }
+}
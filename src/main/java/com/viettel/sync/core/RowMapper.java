@@ -0,0 +1,62 @@
+package com.viettel.sync.core;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Mapper không dùng reflection cho các record có @Table.
+ * Implementation được sinh lúc compile bởi {@link com.viettel.sync.core.processor.RowMapperProcessor}
+ * (tên class: {@code <Record>_RowMapper}, cùng package với record).
+ */
+public interface RowMapper<T> {
+
+    /** Tên bảng (chưa có schema) */
+    String tableName();
+
+    /** Danh sách cột @Column theo đúng thứ tự khai báo trong record */
+    List<String> columns();
+
+    /** Tên cột @Id, null nếu record không có khóa chính */
+    String idColumn();
+
+    /** Giá trị khóa chính của bản ghi, null nếu không có @Id */
+    Object idOf(T item);
+
+    /**
+     * Giá trị các cột theo đúng thứ tự {@link #columns()}
+     */
+    Object[] values(T item);
+
+    /**
+     * Bind toàn bộ cột theo index: cột thứ i được bind vào vị trí offset + i + 1
+     */
+    void bind(PreparedStatement ps, T item, int offset) throws SQLException;
+
+    /**
+     * Dựng record từ dòng hiện tại của ResultSet.
+     * @param positions: vị trí cột (1-based) tương ứng với {@link #columns()}, 0 nếu ResultSet không có cột đó
+     */
+    T map(ResultSet rs, int[] positions) throws SQLException;
+
+    /**
+     * Tra vị trí cột một lần cho cả ResultSet, dùng lại cho mọi dòng
+     */
+    default int[] positions(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        List<String> cols = columns();
+        int[] pos = new int[cols.size()];
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            String label = md.getColumnLabel(i);
+            for (int c = 0; c < pos.length; c++) {
+                if (pos[c] == 0 && cols.get(c).equalsIgnoreCase(label)) {
+                    pos[c] = i;
+                    break;
+                }
+            }
+        }
+        return pos;
+    }
+}
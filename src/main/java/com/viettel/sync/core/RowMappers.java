@@ -0,0 +1,71 @@
+package com.viettel.sync.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tra cứu mapper đã sinh cho từng record và các hàm đọc cột dùng chung cho code sinh ra.
+ */
+public final class RowMappers {
+    private static final String SUFFIX = "_RowMapper";
+    private static final Map<Class<?>, Optional<RowMapper<?>>> CACHE = new ConcurrentHashMap<>();
+
+    private RowMappers() {}
+
+    /**
+     * Lấy mapper của record, null nếu record không có @Table (không được sinh mapper)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RowMapper<T> find(Class<T> clazz) {
+        return (RowMapper<T>) CACHE.computeIfAbsent(clazz, RowMappers::load).orElse(null);
+    }
+
+    public static <T> RowMapper<T> of(Class<T> clazz) {
+        RowMapper<T> mapper = find(clazz);
+        if (mapper == null) {
+            throw new IllegalStateException("Không tìm thấy RowMapper sinh sẵn cho " + clazz.getName()
+                    + " (thiếu @Table hoặc chưa chạy annotation processor)");
+        }
+        return mapper;
+    }
+
+    private static Optional<RowMapper<?>> load(Class<?> clazz) {
+        if (!clazz.isAnnotationPresent(Annotations.Table.class)) return Optional.empty();
+        try {
+            Class<?> generated = Class.forName(clazz.getName() + SUFFIX, true, clazz.getClassLoader());
+            return Optional.of((RowMapper<?>) generated.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    // --- Các hàm đọc theo vị trí (pos = 0 nghĩa là không có cột -> null) ---
+
+    public static Long getLong(ResultSet rs, int pos) throws SQLException {
+        if (pos == 0) return null;
+        long v = rs.getLong(pos);
+        return rs.wasNull() ? null : v;
+    }
+
+    public static Integer getInteger(ResultSet rs, int pos) throws SQLException {
+        if (pos == 0) return null;
+        int v = rs.getInt(pos);
+        return rs.wasNull() ? null : v;
+    }
+
+    public static String getString(ResultSet rs, int pos) throws SQLException {
+        return pos == 0 ? null : rs.getString(pos);
+    }
+
+    public static Timestamp getTimestamp(ResultSet rs, int pos) throws SQLException {
+        return pos == 0 ? null : rs.getTimestamp(pos);
+    }
+
+    public static <V> V getObject(ResultSet rs, int pos, Class<V> type) throws SQLException {
+        return pos == 0 ? null : rs.getObject(pos, type);
+    }
+}
@@ -0,0 +1,174 @@
+package com.viettel.sync.core.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sinh {@code <Record>_RowMapper} cho mỗi record có @Table lúc compile.
+ * Mapper sinh ra bind tham số theo index và dựng record bằng constructor chuẩn,
+ * thay cho việc duyệt Field bằng reflection ở mỗi dòng.
+ *
+ * Annotation được tra theo tên (không import Annotations) để processor có thể
+ * compile riêng ở pass đầu của maven-compiler-plugin.
+ */
+@SupportedAnnotationTypes(RowMapperProcessor.TABLE)
+public class RowMapperProcessor extends AbstractProcessor {
+    static final String TABLE = "com.viettel.sync.core.Annotations.Table";
+    static final String COLUMN = "com.viettel.sync.core.Annotations.Column";
+    static final String ID = "com.viettel.sync.core.Annotations.Id";
+
+    private record ColumnInfo(String field, String column, String type, boolean id) {}
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement tableAnn = processingEnv.getElementUtils().getTypeElement(TABLE);
+        if (tableAnn == null) return false;
+
+        for (Element e : roundEnv.getElementsAnnotatedWith(tableAnn)) {
+            if (e.getKind() != ElementKind.RECORD) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "@Table chỉ hỗ trợ record (cần constructor chuẩn để dựng từ ResultSet)", e);
+                continue;
+            }
+            try {
+                generate((TypeElement) e);
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Không sinh được RowMapper: " + ex.getMessage(), e);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String recordName = type.getQualifiedName().toString();
+        String mapperName = type.getSimpleName() + "_RowMapper";
+        String tableName = stringValue(type, TABLE, "name");
+
+        // Thứ tự field của record = thứ tự tham số constructor chuẩn
+        List<ColumnInfo> fields = new ArrayList<>();
+        for (VariableElement f : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (f.getModifiers().contains(Modifier.STATIC)) continue;
+            String col = stringValue(f, COLUMN, "name");
+            fields.add(new ColumnInfo(f.getSimpleName().toString(), col, typeName(f.asType()), hasAnnotation(f, ID)));
+        }
+        List<ColumnInfo> columns = fields.stream().filter(c -> c.column() != null).toList();
+        ColumnInfo idCol = columns.stream().filter(ColumnInfo::id).findFirst().orElse(null);
+
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(pkg).append(";\n\n");
+        src.append("import com.viettel.sync.core.RowMapper;\n");
+        src.append("import com.viettel.sync.core.RowMappers;\n\n");
+        src.append("import java.sql.PreparedStatement;\n");
+        src.append("import java.sql.ResultSet;\n");
+        src.append("import java.sql.SQLException;\n");
+        src.append("import java.util.List;\n\n");
+        src.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+        src.append("public final class ").append(mapperName)
+                .append(" implements RowMapper<").append(recordName).append("> {\n");
+
+        src.append("    private static final List<String> COLUMNS = List.of(");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) src.append(", ");
+            src.append(quote(columns.get(i).column()));
+        }
+        src.append(");\n\n");
+
+        src.append("    @Override public String tableName() { return ").append(quote(tableName)).append("; }\n");
+        src.append("    @Override public List<String> columns() { return COLUMNS; }\n");
+        src.append("    @Override public String idColumn() { return ")
+                .append(idCol == null ? "null" : quote(idCol.column())).append("; }\n\n");
+
+        src.append("    @Override\n    public Object idOf(").append(recordName).append(" item) {\n");
+        src.append("        return ").append(idCol == null ? "null" : "item." + idCol.field() + "()").append(";\n    }\n\n");
+
+        src.append("    @Override\n    public Object[] values(").append(recordName).append(" item) {\n");
+        src.append("        return new Object[] {");
+        for (int i = 0; i < columns.size(); i++) {
+            src.append(i == 0 ? "" : ", ").append("item.").append(columns.get(i).field()).append("()");
+        }
+        src.append("};\n    }\n\n");
+
+        src.append("    @Override\n    public void bind(PreparedStatement ps, ").append(recordName)
+                .append(" item, int offset) throws SQLException {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            src.append("        ps.setObject(offset + ").append(i + 1).append(", item.")
+                    .append(columns.get(i).field()).append("());\n");
+        }
+        src.append("    }\n\n");
+
+        src.append("    @Override\n    public ").append(recordName)
+                .append(" map(ResultSet rs, int[] pos) throws SQLException {\n");
+        src.append("        return new ").append(recordName).append("(");
+        int colIdx = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            ColumnInfo f = fields.get(i);
+            src.append(i == 0 ? "\n                " : ",\n                ");
+            src.append(f.column() == null ? "null" : reader(f.type(), colIdx++));
+        }
+        src.append("\n        );\n    }\n}\n");
+
+        try (Writer w = processingEnv.getFiler().createSourceFile(pkg + "." + mapperName, type).openWriter()) {
+            w.write(src.toString());
+        }
+    }
+
+    private static String reader(String type, int idx) {
+        String pos = "pos[" + idx + "]";
+        return switch (type) {
+            case "java.lang.Long" -> "RowMappers.getLong(rs, " + pos + ")";
+            case "java.lang.Integer" -> "RowMappers.getInteger(rs, " + pos + ")";
+            case "java.lang.String" -> "RowMappers.getString(rs, " + pos + ")";
+            case "java.sql.Timestamp" -> "RowMappers.getTimestamp(rs, " + pos + ")";
+            default -> "RowMappers.getObject(rs, " + pos + ", " + type + ".class)";
+        };
+    }
+
+    private String typeName(TypeMirror t) {
+        return processingEnv.getTypeUtils().erasure(t).toString();
+    }
+
+    private static boolean hasAnnotation(Element e, String annName) {
+        return findMirror(e, annName) != null;
+    }
+
+    private static String stringValue(Element e, String annName, String attr) {
+        AnnotationMirror m = findMirror(e, annName);
+        if (m == null) return null;
+        for (var entry : m.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(attr)) {
+                return entry.getValue().getValue().toString();
+            }
+        }
+        return null;
+    }
+
+    private static AnnotationMirror findMirror(Element e, String annName) {
+        for (AnnotationMirror m : e.getAnnotationMirrors()) {
+            TypeElement annType = (TypeElement) m.getAnnotationType().asElement();
+            if (annType.getQualifiedName().contentEquals(annName)) return m;
+        }
+        return null;
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,94 @@
+package com.viettel.sync.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+
+/**
+ * Giữ khối ID từ bảng cấp phát nhỏ (1 dòng / loại ID) ở schema Target, tự tạo ở lần dùng đầu nếu chưa có
+ * (user Target cần quyền CREATE TABLE, nếu không thì tạo tay trước):
+ * <pre>
+ * CREATE TABLE &lt;schema&gt;.SYNC_ID_BLOCK (
+ *     NAME    VARCHAR2(128) PRIMARY KEY,
+ *     NEXT_ID NUMBER(19)    NOT NULL
+ * );
+ * </pre>
+ * Mỗi lần giữ khối là 1 lệnh UPDATE (khóa dòng tới lúc commit) -> các lần chạy chồng nhau không nhận trùng khối.
+ * Gọi trên kết nối riêng và commit ngay để không giữ khóa suốt transaction đồng bộ.
+ */
+public class IdBlockRepository {
+    // ORA-00942: table or view does not exist / ORA-00955: name is already used by an existing object
+    private static final int TABLE_NOT_FOUND = 942;
+    private static final int NAME_IN_USE = 955;
+
+    private final String schema;
+    private final String table;
+
+    public IdBlockRepository(String schema, String table) {
+        this.schema = schema;
+        this.table = table;
+    }
+
+    /**
+     * @return ID đầu khối [start, start + size), start > floor
+     */
+    public long reserve(Connection conn, String name, long floor, int size) throws SQLException {
+        String qualified = schema + "." + table;
+        String update = "UPDATE " + qualified + " SET NEXT_ID = GREATEST(NEXT_ID, ?) + ? WHERE NAME = ?";
+        try {
+            if (advanceOrCreate(conn, qualified, update, name, floor, size) == 0) {
+                // Lần đầu: tạo dòng; lần chạy khác vừa tạo trước -> quay lại UPDATE
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO " + qualified + " (NAME, NEXT_ID) VALUES (?, ?)")) {
+                    ps.setString(1, name);
+                    ps.setLong(2, floor + 1 + size);
+                    ps.executeUpdate();
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    advance(conn, update, name, floor, size);
+                }
+            }
+            // Dòng đang bị khóa bởi chính transaction này -> giá trị đọc lại là của mình
+            long next;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT NEXT_ID FROM " + qualified + " WHERE NAME = ?")) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    next = rs.getLong(1);
+                }
+            }
+            conn.commit();
+            return next - size;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    // Bảng chưa có -> tạo rồi UPDATE lại (CREATE TABLE commit ngầm, kết nối riêng chưa có gì để commit)
+    private static int advanceOrCreate(Connection conn, String qualified, String update, String name, long floor, int size)
+            throws SQLException {
+        try {
+            return advance(conn, update, name, floor, size);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != TABLE_NOT_FOUND) throw e;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE " + qualified + " (NAME VARCHAR2(128) PRIMARY KEY, NEXT_ID NUMBER(19) NOT NULL)");
+        } catch (SQLException e) {
+            // Lần chạy khác vừa tạo trước
+            if (e.getErrorCode() != NAME_IN_USE) throw e;
+        }
+        return advance(conn, update, name, floor, size);
+    }
+
+    private static int advance(Connection conn, String sql, String name, long floor, int size) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, floor + 1);
+            ps.setLong(2, size);
+            ps.setString(3, name);
+            return ps.executeUpdate();
+        }
+    }
+}
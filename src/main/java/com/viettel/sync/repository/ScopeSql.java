@@ -0,0 +1,64 @@
+package com.viettel.sync.repository;
+
+import com.viettel.sync.config.SyncScope;
+import com.viettel.sync.core.LongSet;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * Điều kiện WHERE cho đồng bộ theo phạm vi ({@link SyncScope}), dùng chung cho Source và Target
+ * (2 schema có cùng cấu trúc bảng Pipeline). ID là số nên ghép thẳng vào câu lệnh.
+ */
+final class ScopeSql {
+    // Oracle giới hạn 1000 phần tử / danh sách IN
+    private static final int IN_LIMIT = 1000;
+
+    private ScopeSql() {}
+
+    /** (column IN (..) OR column IN (..)), tập rỗng -> luôn sai */
+    static String in(String column, LongSet ids) {
+        if (ids.isEmpty()) return "1 = 0";
+        long[] values = ids.toArray();
+        Arrays.sort(values);
+        StringJoiner or = new StringJoiner(" OR ", "(", ")");
+        for (int i = 0; i < values.length; i += IN_LIMIT) {
+            StringJoiner list = new StringJoiner(", ", column + " IN (", ")");
+            for (int j = i; j < Math.min(i + IN_LIMIT, values.length); j++) list.add(Long.toString(values[j]));
+            or.add(list.toString());
+        }
+        return or.toString();
+    }
+
+    /** Dòng câu join Pipeline (alias cfg, cmd) trong phạm vi */
+    static String pipeline(SyncScope scope) {
+        return "(" + in("cmd.ID_CONNECTION", scope.connectionIds()) + " OR " + in("cfg.ID", scope.configIds()) + ")";
+    }
+
+    /** Config trong phạm vi: dùng Command của Connection được chọn, hoặc được chọn trực tiếp */
+    static String configs(String schema, SyncScope scope) {
+        return "(ID_COMMAND IN (SELECT ID FROM " + schema + ".D_DB_2_HDFS_COMMAND WHERE "
+                + in("ID_CONNECTION", scope.connectionIds()) + ") OR " + in("ID", scope.configIds()) + ")";
+    }
+
+    /** Command trong phạm vi: thuộc Connection được chọn hoặc được Config được chọn dùng */
+    static String commands(String schema, SyncScope scope) {
+        return "(" + in("ID_CONNECTION", scope.connectionIds()) + " OR ID IN (SELECT ID_COMMAND FROM "
+                + schema + ".D_DB_2_HDFS_CONFIG WHERE " + in("ID", scope.configIds()) + "))";
+    }
+
+    /**
+     * Create trong phạm vi: được Config trong phạm vi tham chiếu, hoặc là lệnh Drop Partition tự sinh
+     * (chỉ Clean trỏ tới, DESCRIPTION = tên bảng của Config)
+     */
+    static String creates(String schema, SyncScope scope) {
+        return "(ID IN (SELECT ID_COMMAND_CREATE FROM " + schema + ".D_DB_2_HDFS_CONFIG WHERE " + configs(schema, scope) + ")"
+                + " OR ID IN (SELECT ID_COMMAND_CREATE FROM " + schema + ".D_CLEAN_FOLDER WHERE " + cleans(schema, scope) + "))";
+    }
+
+    /** Clean trong phạm vi: DESCRIPTION = tên bảng của Config trong phạm vi */
+    static String cleans(String schema, SyncScope scope) {
+        return "DESCRIPTION IN (SELECT TABLE_NAME FROM " + schema + ".D_DB_2_HDFS_CONFIG WHERE "
+                + configs(schema, scope) + ")";
+    }
+}
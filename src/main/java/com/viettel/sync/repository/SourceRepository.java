@@ -1,6 +1,11 @@
 package com.viettel.sync.repository;
 
 import com.viettel.sync.config.AppConfigLoader;
+import com.viettel.sync.config.SyncScope;
+import com.viettel.sync.core.JdbcStreams;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.core.RowMapper;
+import com.viettel.sync.core.RowMappers;
 import com.viettel.sync.model.source.SourceConfig;
 import com.viettel.sync.model.source.UnifiedSourceDTO;
 import com.viettel.sync.model.target.TargetConnection;
@@ -9,15 +14,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SourceRepository {
     private static final Logger logger = LoggerFactory.getLogger(SourceRepository.class);
     private final String sourceSchema;
+    private final int fetchSize;
 
     public SourceRepository() {
-        this.sourceSchema = AppConfigLoader.getDbConfig().sourceSchema();
+        this(AppConfigLoader.getDbConfig().sourceSchema());
+    }
+
+    public SourceRepository(String sourceSchema) {
+        this.sourceSchema = sourceSchema;
+        this.fetchSize = AppConfigLoader.getFetchSize();
     }
     public String getSourceSchema() { return sourceSchema; }
 
@@ -25,28 +37,45 @@ public class SourceRepository {
      * Lấy danh sách Connection từ Source
      */
     public List<TargetConnection> getAllConnections(Connection conn) throws SQLException {
-        List<TargetConnection> list = new ArrayList<>();
-        String sql = "SELECT * FROM " + sourceSchema + ".D_CONNECTION";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new TargetConnection(
-                        rs.getLong("ID"),
-                        rs.getString("URL"),
-                        rs.getString("USER_NAME"),
-                        rs.getString("PASS"),
-                        rs.getString("DESCRIPTION"),
-                        rs.getString("CONNECTION_NAME"),
-                        null, // Driver name sẽ được detect lại ở Transformer
-                        rs.getLong("ID_DB"),
-                        rs.getString("PORT"),
-                        rs.getString("TYPE_DB"),
-                        rs.getTimestamp("INSERT_DATE")
-                ));
-            }
+        try (Stream<TargetConnection> rows = streamConnections(conn)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Stream Connection từ Source (phải đóng Stream sau khi dùng)
+     */
+    public Stream<TargetConnection> streamConnections(Connection conn) throws SQLException {
+        return streamConnections(conn, null);
+    }
+
+    /**
+     * Chỉ các Connection có ID trong ids (đồng bộ theo phạm vi)
+     */
+    public List<TargetConnection> getConnections(Connection conn, LongSet ids) throws SQLException {
+        try (Stream<TargetConnection> rows = streamConnections(conn, ScopeSql.in("ID", ids))) {
+            return rows.collect(Collectors.toList());
         }
-        return list;
+    }
+
+    private Stream<TargetConnection> streamConnections(Connection conn, String where) throws SQLException {
+        String sql = "SELECT ID, URL, USER_NAME, PASS, DESCRIPTION, CONNECTION_NAME, ID_DB, PORT, TYPE_DB, INSERT_DATE " +
+                "FROM " + sourceSchema + ".D_CONNECTION" +
+                (where != null ? " WHERE " + where : "");
+
+        return JdbcStreams.stream(conn, sql, fetchSize, rs -> new TargetConnection(
+                rs.getLong("ID"),
+                rs.getString("URL"),
+                rs.getString("USER_NAME"),
+                rs.getString("PASS"),
+                rs.getString("DESCRIPTION"),
+                rs.getString("CONNECTION_NAME"),
+                null, // Driver name sẽ được detect lại ở Transformer
+                rs.getLong("ID_DB"),
+                rs.getString("PORT"),
+                rs.getString("TYPE_DB"),
+                rs.getTimestamp("INSERT_DATE")
+        ));
     }
 
     /**
@@ -54,8 +83,31 @@ public class SourceRepository {
      * ĐIỀU KIỆN: Chỉ lấy những Config nằm trong bảng History có trạng thái SUCCESS
      */
     public List<UnifiedSourceDTO> getValidPipelineData(Connection conn) throws SQLException {
-        List<UnifiedSourceDTO> list = new ArrayList<>();
+        try (Stream<UnifiedSourceDTO> rows = streamValidPipelineData(conn)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Stream dữ liệu Pipeline (phải đóng Stream sau khi dùng)
+     */
+    public Stream<UnifiedSourceDTO> streamValidPipelineData(Connection conn) throws SQLException {
+        return streamValidPipelineData(conn, null);
+    }
+
+    /**
+     * Dữ liệu Pipeline trong phạm vi (đồng bộ 1 phần đồ thị)
+     */
+    public List<UnifiedSourceDTO> getValidPipelineData(Connection conn, SyncScope scope) throws SQLException {
+        try (Stream<UnifiedSourceDTO> rows = streamValidPipelineData(conn, scope)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
 
+    /**
+     * @param scope: null nếu lấy toàn bộ
+     */
+    public Stream<UnifiedSourceDTO> streamValidPipelineData(Connection conn, SyncScope scope) throws SQLException {
         // Sub-query để lọc ID Active từ History
         // Lưu ý: Bạn có thể đưa các tham số ngày tháng (20251101) ra file config nếu cần động
         String historyFilter = "SELECT DISTINCT ID_TABLE FROM " + sourceSchema + ".D_DB_2_HDFS_HISTORY " +
@@ -70,7 +122,7 @@ public class SourceRepository {
         // 2. Command Info
         sql.append("  cmd.ID as CMD_ID, cmd.SQL_COMMAND as CMD_SQL, cmd.ID_CONNECTION, cmd.DESCRIPTION as CMD_DESC, ");
         sql.append("  cmd.FETCH_SIZE, cmd.USE_PARTITION, cmd.NUM_FIELDS, cmd.NUM_EXES, cmd.NUM_PARTS, ");
-        sql.append("  cmd.USE_SUBPARTITION, cmd.PARAMS, cmd.SPLIT_COLUMN, cmd.SOURCE_TABLE, cmd.ID_DB as CMD_ID_DB, ");
+        sql.append("  cmd.USE_SUBPARTITION, cmd.PARAMS, cmd.SPLIT_COLUMN, cmd.ID_DB as CMD_ID_DB, ");
 
         // 3. Create Command Info (Left Join vì có thể null)
         sql.append("  crt.ID as CRT_ID, crt.SQL_COMMAND as CRT_SQL, crt.DESCRIPTION as CRT_DESC, crt.ID_CONNECTION as CRT_CONN ");
@@ -81,88 +133,112 @@ public class SourceRepository {
 
         // Áp dụng bộ lọc History
         sql.append("WHERE cfg.ID IN (").append(historyFilter).append(")");
+        if (scope != null) sql.append(" AND ").append(ScopeSql.pipeline(scope));
 
         logger.info("Executing Pipeline Query (Active Only)...");
 
-        try (PreparedStatement ps = conn.prepareStatement(sql.toString());
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new UnifiedSourceDTO(
-                        // Config Args
-                        rs.getLong("CFG_ID"),
-                        rs.getString("TABLE_NAME"),
-                        rs.getString("LOCATION_PATH"),
-                        rs.getString("CFG_DESC"),
-                        rs.getString("SOURCE"),
-                        rs.getString("IMPORT_TYPE"),
-                        rs.getString("OUTPUT_FORMAT"),
-
-                        // Command Args
-                        rs.getLong("CMD_ID"),
-                        rs.getString("CMD_SQL"),
-                        rs.getLong("FETCH_SIZE"),
-                        rs.getLong("USE_PARTITION"),
-                        rs.getLong("NUM_FIELDS"),
-                        rs.getLong("NUM_EXES"),
-                        rs.getLong("NUM_PARTS"),
-                        rs.getLong("USE_SUBPARTITION"),
-                        rs.getString("PARAMS"),
-                        rs.getString("SPLIT_COLUMN"),
-                        rs.getLong("CMD_ID_DB"),
-                        rs.getString("CMD_DESC"),
-
-                        // Create Args
-                        rs.getObject("CRT_ID") != null ? rs.getLong("CRT_ID") : null,
-                        rs.getString("CRT_SQL"),
-                        rs.getString("CRT_DESC"),
-                        rs.getObject("CRT_CONN") != null ? rs.getLong("CRT_CONN") : null,
-
-                        // Connection ID (dùng chung cho luồng)
-                        rs.getLong("ID_CONNECTION")
-                ));
-            }
-        }
-        return list;
+        return JdbcStreams.stream(conn, sql.toString(), fetchSize, rs -> new UnifiedSourceDTO(
+                // Config Args
+                rs.getLong("CFG_ID"),
+                rs.getString("TABLE_NAME"),
+                rs.getString("LOCATION_PATH"),
+                rs.getString("CFG_DESC"),
+                rs.getString("SOURCE"),
+                rs.getString("IMPORT_TYPE"),
+                rs.getString("OUTPUT_FORMAT"),
+
+                // Command Args
+                rs.getLong("CMD_ID"),
+                rs.getString("CMD_SQL"),
+                rs.getLong("FETCH_SIZE"),
+                rs.getLong("USE_PARTITION"),
+                rs.getLong("NUM_FIELDS"),
+                rs.getLong("NUM_EXES"),
+                rs.getLong("NUM_PARTS"),
+                rs.getLong("USE_SUBPARTITION"),
+                rs.getString("PARAMS"),
+                rs.getString("SPLIT_COLUMN"),
+                rs.getLong("CMD_ID_DB"),
+                rs.getString("CMD_DESC"),
+
+                // Create Args
+                rs.getObject("CRT_ID") != null ? rs.getLong("CRT_ID") : null,
+                rs.getString("CRT_SQL"),
+                rs.getString("CRT_DESC"),
+                rs.getObject("CRT_CONN") != null ? rs.getLong("CRT_CONN") : null,
+
+                // Connection ID (dùng chung cho luồng)
+                rs.getLong("ID_CONNECTION")
+        ));
     }
 
     /**
      * Lấy danh sách Time Param Config
      */
     public List<TargetTimeParam> getAllTimeParams(Connection conn) throws SQLException {
-        List<TargetTimeParam> list = new ArrayList<>();
-        String sql = "SELECT * FROM " + sourceSchema + ".D_TIME_PARAM_CONFIG";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new TargetTimeParam(
-                        rs.getString("NAME"),
-                        rs.getInt("ADD_DAY"),
-                        rs.getInt("ADD_MON"),
-                        rs.getInt("ADD_YEAR"),
-                        rs.getString("FORMAT"),
-                        rs.getString("EXTEND_FORMAT"),
-                        rs.getInt("ADD_MIN"),
-                        rs.getInt("ADD_HOUR")
-                ));
-            }
+        try (Stream<TargetTimeParam> rows = streamTimeParams(conn)) {
+            return rows.collect(Collectors.toList());
         }
-        return list;
     }
 
-    public List<SourceConfig> getAllSourceConfig(Connection conn) throws SQLException {
-        List<SourceConfig> list = new ArrayList<>();
-        String sql = "SELECT ID, TABLE_NAME FROM " + sourceSchema + ".D_DB_2_HDFS_CONFIG";
+    public Stream<TargetTimeParam> streamTimeParams(Connection conn) throws SQLException {
+        return streamTimeParams(conn, null);
+    }
+
+    /**
+     * @param sinceScn: chỉ lấy dòng thay đổi sau SCN này (ORA_ROWSCN), null để lấy hết
+     */
+    public Stream<TargetTimeParam> streamTimeParams(Connection conn, Long sinceScn) throws SQLException {
+        String sql = "SELECT NAME, ADD_DAY, ADD_MON, ADD_YEAR, FORMAT, EXTEND_FORMAT, ADD_MIN, ADD_HOUR " +
+                "FROM " + sourceSchema + ".D_TIME_PARAM_CONFIG" +
+                (sinceScn != null ? " WHERE ORA_ROWSCN > " + sinceScn : "");
+
+        return JdbcStreams.stream(conn, sql, fetchSize, rs -> new TargetTimeParam(
+                rs.getString("NAME"),
+                rs.getInt("ADD_DAY"),
+                rs.getInt("ADD_MON"),
+                rs.getInt("ADD_YEAR"),
+                rs.getString("FORMAT"),
+                rs.getString("EXTEND_FORMAT"),
+                rs.getInt("ADD_MIN"),
+                rs.getInt("ADD_HOUR")
+        ));
+    }
+
+    /**
+     * Connection sở hữu các Config (qua Command)
+     */
+    public LongSet connectionIdsOfConfigs(Connection conn, LongSet configIds) throws SQLException {
+        String sql = "SELECT DISTINCT cmd.ID_CONNECTION FROM " + sourceSchema + ".D_DB_2_HDFS_CONFIG cfg " +
+                "JOIN " + sourceSchema + ".D_DB_2_HDFS_COMMAND cmd ON cfg.ID_COMMAND = cmd.ID " +
+                "WHERE cmd.ID_CONNECTION IS NOT NULL AND " + ScopeSql.in("cfg.ID", configIds);
+        LongSet ids = new LongSet();
+        try (Stream<Long> rows = JdbcStreams.stream(conn, sql, fetchSize, rs -> rs.getLong(1))) {
+            rows.forEach(ids::add);
+        }
+        return ids;
+    }
+
+    /**
+     * ID Create lớn nhất ở Source (đồng bộ theo phạm vi: ID tự sinh không được trùng Create ngoài phạm vi)
+     */
+    public long getMaxCreateId(Connection conn) throws SQLException {
+        String sql = "SELECT NVL(MAX(ID), 0) FROM " + sourceSchema + ".D_DB_2_HDFS_COMMAND_CREATE";
+        try (Stream<Long> rows = JdbcStreams.stream(conn, sql, fetchSize, rs -> rs.getLong(1))) {
+            return rows.findFirst().orElse(0L);
+        }
+    }
 
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new SourceConfig(
-                        rs.getLong("ID"),
-                        rs.getString("TABLE_NAME")
-                ));
-            }
+    public List<SourceConfig> getAllSourceConfig(Connection conn) throws SQLException {
+        try (Stream<SourceConfig> rows = streamSourceConfig(conn)) {
+            return rows.collect(Collectors.toList());
         }
-        return list;
+    }
+
+    public Stream<SourceConfig> streamSourceConfig(Connection conn) throws SQLException {
+        RowMapper<SourceConfig> mapper = RowMappers.of(SourceConfig.class);
+        String sql = "SELECT ID, TABLE_NAME FROM " + sourceSchema + ".D_DB_2_HDFS_CONFIG";
+        int[] pos = {1, 2};
+        return JdbcStreams.stream(conn, sql, fetchSize, rs -> mapper.map(rs, pos));
     }
 }
@@ -1,108 +1,126 @@
 package com.viettel.sync.repository;
 
 import com.viettel.sync.config.AppConfigLoader;
+import com.viettel.sync.config.SyncScope;
 import com.viettel.sync.core.GenericRepository;
+import com.viettel.sync.core.JdbcStreams;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.core.RepositoryOptions;
 import com.viettel.sync.model.target.*;
-import java.sql.*;
-import java.util.ArrayList;
+import java.sql.Connection;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TargetRepository {
     private final String targetSchema;
-    public final GenericRepository<TargetConnection> connectionRepo = new GenericRepository<>();
-    public final GenericRepository<TargetCommand> commandRepo = new GenericRepository<>();
-    public final GenericRepository<TargetConfig> configRepo = new GenericRepository<>();
-    public final GenericRepository<TargetCreate> createRepo = new GenericRepository<>();
-    public final GenericRepository<TargetClean> cleanRepo = new GenericRepository<>();
-    public final GenericRepository<TargetTimeParam> timeRepo = new GenericRepository<>();
-
-    public TargetRepository() { this.targetSchema = AppConfigLoader.getDbConfig().targetSchema(); }
-    public String getTargetSchema() { return targetSchema; }
+    private final RepositoryOptions options = AppConfigLoader.getRepositoryOptions();
+    public final GenericRepository<TargetConnection> connectionRepo = new GenericRepository<>(options);
+    public final GenericRepository<TargetCommand> commandRepo = new GenericRepository<>(options);
+    public final GenericRepository<TargetConfig> configRepo = new GenericRepository<>(options);
+    public final GenericRepository<TargetCreate> createRepo = new GenericRepository<>(options);
+    public final GenericRepository<TargetClean> cleanRepo = new GenericRepository<>(options);
+    public final GenericRepository<TargetTimeParam> timeRepo = new GenericRepository<>(options);
 
-    // Helper
-    private Long getLong(ResultSet rs, String col) { try { return rs.getLong(col); } catch(Exception e) { return 0L; } }
-    private Timestamp getTime(ResultSet rs, String col) { try { return rs.getTimestamp(col); } catch(Exception e) { return null; } }
+    public TargetRepository() { this(AppConfigLoader.getDbConfig().targetSchema()); }
+    public TargetRepository(String targetSchema) { this.targetSchema = targetSchema; }
+    public String getTargetSchema() { return targetSchema; }
 
+    // Đọc bằng RowMapper sinh sẵn: SELECT đúng các cột @Column, fetch size theo app.fetch-size.
+    // Cột số NULL -> null (bản cũ đọc ra 0 cho FETCH_SIZE, NUM_*, IS_ACTIVE, MAX_TIME, ID_COMMAND, ID_CONNECTION, ADD_*...):
+    // giữ đúng giá trị trong DB để hash DIFF khớp với dòng sẽ ghi (VD: ID_CONNECTION của Create tự sinh / copy từ Source là NULL).
+    // Nơi dùng các cột này đều đã xử lý null: Safe List (idCommand != null), PipelineGraph/LongSet (khóa null = không có),
+    // báo cáo plan (in "null"). Dòng Source vẫn đọc NULL -> 0 như cũ nên dữ liệu ghi sang Target không đổi.
     public List<TargetConnection> getAllTargetConnections(Connection conn) throws Exception {
-        List<TargetConnection> list = new ArrayList<>();
-        String sql = "SELECT * FROM " + targetSchema + ".D_CONNECTION";
-        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new TargetConnection(
-                        rs.getLong("ID"), rs.getString("URL"), rs.getString("USER_NAME"), rs.getString("PASS"),
-                        rs.getString("DESCRIPTION"), rs.getString("CONNECTION_NAME"), rs.getString("DRIVER_NAME"),
-                        rs.getLong("ID_DB"), rs.getString("PORT"), rs.getString("TYPE_DB"), getTime(rs, "INSERT_DATE")
-                ));
-            }
-        }
-        return list;
+        return connectionRepo.selectAll(conn, targetSchema, TargetConnection.class);
     }
 
     public List<TargetCommand> getAllTargetCommands(Connection conn) throws Exception {
-        List<TargetCommand> list = new ArrayList<>();
-        String sql = "SELECT * FROM " + targetSchema + ".D_DB_2_HDFS_COMMAND";
-        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new TargetCommand(
-                        rs.getLong("ID"), rs.getLong("ID_CONNECTION"),
-                        getLong(rs, "FETCH_SIZE"), getLong(rs, "USE_PARTITION"), getLong(rs, "NUM_FIELDS"),
-                        getLong(rs, "NUM_EXES"), getLong(rs, "NUM_PARTS"), rs.getString("DESCRIPTION"),
-                        getLong(rs, "USE_SUBPARTITION"), rs.getString("PARAMS"), getLong(rs, "ID_DB"),
-                        rs.getString("SPLIT_COLUMN"), rs.getString("MASK_COLUMN"),
-                        getTime(rs, "INSERT_DATE"), rs.getString("SQL_COMMAND")
-                ));
-            }
-        }
-        return list;
+        return commandRepo.selectAll(conn, targetSchema, TargetCommand.class);
     }
 
     public List<TargetConfig> getAllTargetConfigs(Connection conn) throws Exception {
-        List<TargetConfig> list = new ArrayList<>();
-        String sql = "SELECT * FROM " + targetSchema + ".D_DB_2_HDFS_CONFIG";
-        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new TargetConfig(
-                        rs.getLong("ID"), rs.getLong("ID_COMMAND"),
-                        rs.getObject("ID_COMMAND_CREATE") != null ? rs.getLong("ID_COMMAND_CREATE") : null,
-                        rs.getString("TABLE_NAME"), rs.getString("LOCATION_PATH"), rs.getString("REMOVE_PATH"),
-                        rs.getString("SOURCE"), rs.getString("DESCRIPTION"), getLong(rs, "IS_ACTIVE"),
-                        rs.getObject("ID_GROUP") != null ? rs.getLong("ID_GROUP") : null,
-                        getLong(rs, "MAX_TIME"), getTime(rs, "INSERT_DATE"),
-                        rs.getString("OUTPUT_FORMAT"), rs.getString("IMPORT_TYPE")
-                ));
-            }
-        }
-        return list;
+        return configRepo.selectAll(conn, targetSchema, TargetConfig.class);
     }
 
     public List<TargetCreate> getAllTargetCreates(Connection conn) throws Exception {
-        List<TargetCreate> list = new ArrayList<>();
-        String sql = "SELECT * FROM " + targetSchema + ".D_DB_2_HDFS_COMMAND_CREATE";
-        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new TargetCreate(
-                        rs.getLong("ID"),
-                        getLong(rs, "ID_CONNECTION"),
-                        rs.getString("DESCRIPTION"),
-                        getTime(rs, "INSERT_DATE"),
-                        rs.getString("SQL_COMMAND")
-                ));
-            }
-        }
-        return list;
+        return createRepo.selectAll(conn, targetSchema, TargetCreate.class);
+    }
+
+    public List<TargetClean> getAllTargetCleans(Connection conn) throws Exception {
+        return cleanRepo.selectAll(conn, targetSchema, TargetClean.class);
     }
 
     public List<TargetTimeParam> getAllTargetTimeParams(Connection conn) throws Exception {
-        List<TargetTimeParam> list = new ArrayList<>();
-        String sql = "SELECT * FROM " + targetSchema + ".D_TIME_PARAM_CONFIG";
-        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                list.add(new TargetTimeParam(
-                        rs.getString("NAME"), rs.getInt("ADD_DAY"), rs.getInt("ADD_MON"), rs.getInt("ADD_YEAR"),
-                        rs.getString("FORMAT"), rs.getString("EXTEND_FORMAT"), rs.getInt("ADD_MIN"), rs.getInt("ADD_HOUR")
-                ));
-            }
+        return timeRepo.selectAll(conn, targetSchema, TargetTimeParam.class);
+    }
+
+    // Đồng bộ theo phạm vi: cùng điều kiện lọc với Source, đẩy xuống câu SELECT
+    public List<TargetConnection> getTargetConnections(Connection conn, LongSet ids) throws Exception {
+        return select(connectionRepo, conn, TargetConnection.class, ScopeSql.in("ID", ids));
+    }
+
+    public List<TargetCommand> getTargetCommands(Connection conn, SyncScope scope) throws Exception {
+        return select(commandRepo, conn, TargetCommand.class, ScopeSql.commands(targetSchema, scope));
+    }
+
+    public List<TargetConfig> getTargetConfigs(Connection conn, SyncScope scope) throws Exception {
+        return select(configRepo, conn, TargetConfig.class, ScopeSql.configs(targetSchema, scope));
+    }
+
+    public List<TargetCreate> getTargetCreates(Connection conn, SyncScope scope) throws Exception {
+        return select(createRepo, conn, TargetCreate.class, ScopeSql.creates(targetSchema, scope));
+    }
+
+    public List<TargetClean> getTargetCleans(Connection conn, SyncScope scope) throws Exception {
+        return select(cleanRepo, conn, TargetClean.class, ScopeSql.cleans(targetSchema, scope));
+    }
+
+    /**
+     * Connection sở hữu các Config (qua Command)
+     */
+    public LongSet connectionIdsOfConfigs(Connection conn, LongSet configIds) throws Exception {
+        String sql = "SELECT DISTINCT cmd.ID_CONNECTION FROM " + targetSchema + ".D_DB_2_HDFS_CONFIG cfg " +
+                "JOIN " + targetSchema + ".D_DB_2_HDFS_COMMAND cmd ON cfg.ID_COMMAND = cmd.ID " +
+                "WHERE cmd.ID_CONNECTION IS NOT NULL AND " + ScopeSql.in("cfg.ID", configIds);
+        LongSet ids = new LongSet();
+        try (Stream<Long> rows = JdbcStreams.stream(conn, sql, options.fetchSize(), rs -> rs.getLong(1))) {
+            rows.forEach(ids::add);
+        }
+        return ids;
+    }
+
+    public long getMaxCreateId(Connection conn) throws Exception {
+        String sql = "SELECT NVL(MAX(ID), 0) FROM " + targetSchema + ".D_DB_2_HDFS_COMMAND_CREATE";
+        try (Stream<Long> rows = JdbcStreams.stream(conn, sql, options.fetchSize(), rs -> rs.getLong(1))) {
+            return rows.findFirst().orElse(0L);
         }
-        return list;
+    }
+
+    private <T> List<T> select(GenericRepository<T> repo, Connection conn, Class<T> clazz, String where) throws Exception {
+        try (Stream<T> rows = repo.stream(conn, targetSchema, clazz, where)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    // Bản Stream: xử lý dần từng dòng, phải đóng Stream (try-with-resources)
+    public Stream<TargetConnection> streamTargetConnections(Connection conn) throws Exception {
+        return connectionRepo.stream(conn, targetSchema, TargetConnection.class, null);
+    }
+
+    public Stream<TargetCommand> streamTargetCommands(Connection conn) throws Exception {
+        return commandRepo.stream(conn, targetSchema, TargetCommand.class, null);
+    }
+
+    public Stream<TargetConfig> streamTargetConfigs(Connection conn) throws Exception {
+        return configRepo.stream(conn, targetSchema, TargetConfig.class, null);
+    }
+
+    public Stream<TargetCreate> streamTargetCreates(Connection conn) throws Exception {
+        return createRepo.stream(conn, targetSchema, TargetCreate.class, null);
+    }
+
+    public Stream<TargetTimeParam> streamTargetTimeParams(Connection conn) throws Exception {
+        return timeRepo.stream(conn, targetSchema, TargetTimeParam.class, null);
     }
 }
@@ -0,0 +1,33 @@
+package com.viettel.sync.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Đọc "watermark" của 1 bảng: MAX(ORA_ROWSCN) + COUNT(*).
+ * SCN tăng khi có insert/update, COUNT đổi khi có delete -> 2 giá trị đủ để biết bảng có thay đổi hay không.
+ */
+public class WatermarkRepository {
+
+    public record TableWatermark(long maxScn, long rowCount) {
+        public String encode() {
+            return maxScn + ":" + rowCount;
+        }
+
+        public static TableWatermark decode(String raw) {
+            if (raw == null || !raw.contains(":")) return null;
+            String[] parts = raw.trim().split(":");
+            return new TableWatermark(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        }
+    }
+
+    public TableWatermark read(Connection conn, String schema, String table) throws SQLException {
+        String sql = "SELECT MAX(ORA_ROWSCN), COUNT(*) FROM " + schema + "." + table;
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return new TableWatermark(rs.getLong(1), rs.getLong(2));
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.core.LongObjectMap;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.core.RecordCodec;
+import com.viettel.sync.core.RowDiff;
+import com.viettel.sync.core.RowMapper;
+import com.viettel.sync.core.RowMappers;
+import com.viettel.sync.model.target.*;
+import com.viettel.sync.repository.TargetRepository;
+import com.viettel.sync.service.PipelinePlanner.PipelinePlan;
+import com.viettel.sync.service.SyncLogicHelper.PipelineSafeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ghi Pipeline theo từng chunk (app.pipeline-chunk-connections > 0): mỗi chunk gồm trọn
+ * Command + Config + Create + Clean của 1 nhóm Connection và commit riêng, nên khóa dòng / undo
+ * chỉ giữ trong phạm vi 1 chunk thay vì cả lần chạy.
+ *
+ * Trước khi ghi, phần bù trừ của chunk (ảnh cũ các dòng bị sửa/xóa + các dòng sẽ thêm) được ghi nối vào file nhật ký.
+ * Chunk sau lỗi -> hoàn tác các chunk đã commit theo thứ tự ngược. Tiến trình chết giữa chừng -> file nhật ký còn lại,
+ * lần chạy sau hoàn tác trước khi đọc dữ liệu ({@link #recover}). Mọi thao tác bù trừ đều làm lại được nhiều lần.
+ *
+ * Mỗi chunk luôn ghi theo diff (chỉ dòng thay đổi), không phụ thuộc app.write-mode.
+ */
+final class ChunkedPipelineWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedPipelineWriter.class);
+    private static final Set<String> IGNORE = Set.of("INSERT_DATE");
+
+    /** Bù trừ của 1 chunk: xóa các dòng chunk đã thêm, ghi lại ảnh cũ các dòng chunk đã sửa/xóa */
+    record Compensation(
+            List<Long> removeCmdIds, List<TargetCommand> restoreCmds,
+            List<Long> removeCfgIds, List<TargetConfig> restoreCfgs,
+            List<Long> removeCreateIds, List<TargetCreate> restoreCreates,
+            List<TargetClean> removeCleans, List<TargetClean> restoreCleans
+    ) {}
+
+    private record Chunk(List<Long> connectionIds,
+                         List<TargetCommand> cmds, List<Long> delCmdIds,
+                         List<TargetConfig> cfgs, List<Long> delCfgIds,
+                         List<TargetCreate> creates, List<Long> delCreateIds,
+                         List<TargetClean> currentCleans, List<TargetClean> cleans,
+                         Compensation compensation) {}
+
+    private final TargetRepository targetRepo;
+    private final Path journalFile;
+    private final int connectionsPerChunk;
+
+    ChunkedPipelineWriter(TargetRepository targetRepo, Path journalFile, int connectionsPerChunk) {
+        this.targetRepo = targetRepo;
+        this.journalFile = journalFile;
+        this.connectionsPerChunk = connectionsPerChunk;
+    }
+
+    /**
+     * Lần chạy trước dừng giữa chừng: hoàn tác các chunk trong nhật ký để Target về trạng thái trước lần chạy đó
+     */
+    void recover(Connection conn) throws Exception {
+        if (!Files.exists(journalFile)) return;
+        List<Compensation> pending = readJournal();
+        logger.warn("⚠️ Lần chạy trước dừng khi đang ghi Pipeline theo chunk: hoàn tác {} chunk theo {}", pending.size(), journalFile);
+        compensate(conn, pending);
+        Files.delete(journalFile);
+    }
+
+    void write(Connection conn, SyncSnapshot snapshot, PipelinePlan plan) throws Exception {
+        List<Chunk> chunks = buildChunks(snapshot, plan);
+        logger.info("   -> [CHUNK] {} chunk ({} Connection / chunk)", chunks.size(), connectionsPerChunk);
+
+        List<Compensation> committed = new ArrayList<>();
+        int n = 0;
+        try {
+            for (Chunk c : chunks) {
+                n++;
+                long start = System.nanoTime();
+                appendJournal(c.compensation());
+                apply(conn, c);
+                conn.commit();
+                committed.add(c.compensation());
+                logger.info("   -> [CHUNK {}/{}] Connection {}: Cmd={}/-{}, Cfg={}/-{}, Create={}/-{}, Clean={} ({} ms)",
+                        n, chunks.size(), c.connectionIds(), c.cmds().size(), c.delCmdIds().size(),
+                        c.cfgs().size(), c.delCfgIds().size(), c.creates().size(), c.delCreateIds().size(),
+                        c.cleans().size(), (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (Exception e) {
+            logger.error("❌ Chunk {}/{} lỗi, hoàn tác {} chunk đã commit", n, chunks.size(), committed.size());
+            conn.rollback();
+            try {
+                compensate(conn, committed);
+            } catch (Exception ex) {
+                // Giữ file nhật ký: lần chạy sau sẽ hoàn tác lại
+                logger.error("❌ Hoàn tác chưa xong, sẽ thử lại ở lần chạy sau ({})", journalFile, ex);
+                throw e;
+            }
+            Files.deleteIfExists(journalFile);
+            throw e;
+        }
+        Files.deleteIfExists(journalFile);
+    }
+
+    // --- Chia chunk ---
+
+    private List<Chunk> buildChunks(SyncSnapshot s, PipelinePlan plan) {
+        PipelineSafeResult safe = plan.safeLists();
+        List<TargetCommand> curCmds = notIn(s.targetCommands(), safe.safeCommandIds(), TargetCommand::id);
+        List<TargetConfig> curCfgs = notIn(s.targetConfigs(), safe.safeConfigIds(), TargetConfig::id);
+        List<TargetCreate> curCreates = notIn(s.targetCreates(), safe.safeCreateIds(), TargetCreate::id);
+
+        RowDiff.Result<TargetCommand> cmdDiff = RowDiff.diff(RowMappers.of(TargetCommand.class), plan.insCmd(), curCmds, IGNORE);
+        RowDiff.Result<TargetConfig> cfgDiff = RowDiff.diff(RowMappers.of(TargetConfig.class), plan.insCfg(), curCfgs, IGNORE);
+        RowDiff.Result<TargetCreate> createDiff = RowDiff.diff(RowMappers.of(TargetCreate.class), plan.insCreate(), curCreates, IGNORE);
+
+        // Connection của từng dòng: Command -> ID_CONNECTION; Config -> qua Command;
+        // Create -> qua Config tham chiếu nó, lệnh Drop Partition tự sinh -> qua tên bảng (DESCRIPTION);
+        // Clean -> qua Create liên kết, hoặc tên bảng. Không xác định được -> chunk cuối (null)
+        // Dòng vừa transform ghi đè dòng Target cùng ID
+        PipelineGraph graph = PipelineGraph.of(concat(s.targetCommands(), plan.insCmd()), concat(s.targetConfigs(), plan.insCfg()));
+
+        LongObjectMap<Long> connOfCreate = new LongObjectMap<>();
+        Map<String, Long> connOfTable = new HashMap<>();
+        for (List<TargetConfig> cfgs : List.of(s.targetConfigs(), plan.insCfg())) {
+            for (TargetConfig cfg : cfgs) {
+                Long connId = graph.connectionOfCommand(cfg.idCommand());
+                if (cfg.idCommandCreate() != null) connOfCreate.put(cfg.idCommandCreate(), connId);
+                if (cfg.tableName() != null) connOfTable.put(cfg.tableName(), connId);
+            }
+        }
+        Function<TargetCreate, Long> createConn = c -> connOfCreate.containsKey(c.id())
+                ? connOfCreate.get(c.id()) : connOfTable.get(c.description());
+        Function<TargetClean, Long> cleanConn = c -> c.idCommandCreate() != null && connOfCreate.containsKey(c.idCommandCreate())
+                ? connOfCreate.get(c.idCommandCreate()) : connOfTable.get(c.description());
+        for (List<TargetCreate> creates : List.of(s.targetCreates(), plan.insCreate())) {
+            for (TargetCreate c : creates) connOfCreate.putIfAbsent(c.id(), createConn.apply(c));
+        }
+
+        LongObjectMap<TargetCommand> oldCmds = byId(curCmds, TargetCommand::id);
+        LongObjectMap<TargetConfig> oldCfgs = byId(curCfgs, TargetConfig::id);
+        LongObjectMap<TargetCreate> oldCreates = byId(curCreates, TargetCreate::id);
+
+        // Nhóm Connection có thay đổi (Clean: cả tập của nhóm khác đi)
+        Map<Long, List<TargetClean>> desiredCleans = groupBy(plan.insClean(), cleanConn);
+        Map<Long, List<TargetClean>> currentCleans = groupBy(s.targetCleans(), cleanConn);
+        RowMapper<TargetClean> cleanMapper = RowMappers.of(TargetClean.class);
+
+        LongSet touched = new LongSet();
+        boolean residual = false;
+        List<Long> changed = new ArrayList<>();
+        cmdDiff.inserts().forEach(c -> changed.add(graph.connectionOfCommand(c.id())));
+        cmdDiff.updates().forEach(c -> changed.add(graph.connectionOfCommand(c.id())));
+        cmdDiff.deleteIds().forEach(id -> changed.add(graph.connectionOfCommand((Long) id)));
+        cfgDiff.inserts().forEach(c -> changed.add(graph.connectionOfConfig(c.id())));
+        cfgDiff.updates().forEach(c -> changed.add(graph.connectionOfConfig(c.id())));
+        cfgDiff.deleteIds().forEach(id -> changed.add(graph.connectionOfConfig((Long) id)));
+        createDiff.inserts().forEach(c -> changed.add(connOfCreate.get(c.id())));
+        createDiff.updates().forEach(c -> changed.add(connOfCreate.get(c.id())));
+        createDiff.deleteIds().forEach(id -> changed.add(connOfCreate.get((Long) id)));
+        Set<Long> cleanGroups = new HashSet<>(desiredCleans.keySet());
+        cleanGroups.addAll(currentCleans.keySet());
+        for (Long g : cleanGroups) {
+            if (!RowDiff.sameContent(cleanMapper, desiredCleans.getOrDefault(g, List.of()),
+                    currentCleans.getOrDefault(g, List.of()), IGNORE)) changed.add(g);
+        }
+        for (Long g : changed) {
+            if (g == null) residual = true;
+            else touched.add(g);
+        }
+
+        List<List<Long>> groups = new ArrayList<>();
+        List<Long> sorted = touched.stream().sorted().boxed().toList();
+        for (int i = 0; i < sorted.size(); i += connectionsPerChunk) {
+            groups.add(sorted.subList(i, Math.min(i + connectionsPerChunk, sorted.size())));
+        }
+        if (residual) groups.add(Collections.singletonList(null));
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (List<Long> group : groups) {
+            Set<Long> g = new HashSet<>(group);
+            List<TargetCommand> cmds = concat(cmdDiff.inserts(), cmdDiff.updates()).stream()
+                    .filter(c -> g.contains(graph.connectionOfCommand(c.id()))).collect(Collectors.toList());
+            List<Long> delCmdIds = ids(cmdDiff.deleteIds()).stream()
+                    .filter(id -> g.contains(graph.connectionOfCommand(id))).collect(Collectors.toList());
+            List<TargetConfig> cfgs = concat(cfgDiff.inserts(), cfgDiff.updates()).stream()
+                    .filter(c -> g.contains(graph.connectionOfConfig(c.id()))).collect(Collectors.toList());
+            List<Long> delCfgIds = ids(cfgDiff.deleteIds()).stream()
+                    .filter(id -> g.contains(graph.connectionOfConfig(id))).collect(Collectors.toList());
+            List<TargetCreate> creates = concat(createDiff.inserts(), createDiff.updates()).stream()
+                    .filter(c -> g.contains(connOfCreate.get(c.id()))).collect(Collectors.toList());
+            List<Long> delCreateIds = ids(createDiff.deleteIds()).stream()
+                    .filter(id -> g.contains(connOfCreate.get(id))).collect(Collectors.toList());
+
+            List<TargetClean> curClean = new ArrayList<>();
+            List<TargetClean> newClean = new ArrayList<>();
+            for (Long key : group) {
+                List<TargetClean> want = desiredCleans.getOrDefault(key, List.of());
+                List<TargetClean> have = currentCleans.getOrDefault(key, List.of());
+                if (RowDiff.sameContent(cleanMapper, want, have, IGNORE)) continue;
+                curClean.addAll(have);
+                newClean.addAll(want);
+            }
+
+            Compensation comp = new Compensation(
+                    newIds(cmds, oldCmds, TargetCommand::id), oldRows(cmds, delCmdIds, oldCmds, TargetCommand::id),
+                    newIds(cfgs, oldCfgs, TargetConfig::id), oldRows(cfgs, delCfgIds, oldCfgs, TargetConfig::id),
+                    newIds(creates, oldCreates, TargetCreate::id), oldRows(creates, delCreateIds, oldCreates, TargetCreate::id),
+                    concat(curClean, newClean), curClean);
+            chunks.add(new Chunk(group, cmds, delCmdIds, cfgs, delCfgIds, creates, delCreateIds, curClean, newClean, comp));
+        }
+        return chunks;
+    }
+
+    // --- Ghi ---
+
+    // Cùng thứ tự với chế độ DIFF: xóa Config -> Command -> Create, rồi ghi Command -> Config -> Create, cuối cùng Clean
+    // Xóa lỗi phải ném ra (deleteByIdsOrThrow) để chunk rollback, không commit nửa vời
+    private void apply(Connection conn, Chunk c) throws SQLException {
+        String schema = targetRepo.getTargetSchema();
+        targetRepo.configRepo.deleteByIdsOrThrow(conn, schema, TargetConfig.class, c.delCfgIds());
+        targetRepo.commandRepo.deleteByIdsOrThrow(conn, schema, TargetCommand.class, c.delCmdIds());
+        targetRepo.createRepo.deleteByIdsOrThrow(conn, schema, TargetCreate.class, c.delCreateIds());
+
+        targetRepo.commandRepo.upsertBatch(conn, schema, c.cmds(), IGNORE);
+        targetRepo.configRepo.upsertBatch(conn, schema, c.cfgs(), IGNORE);
+        targetRepo.createRepo.upsertBatch(conn, schema, c.creates(), IGNORE);
+
+        targetRepo.cleanRepo.deleteMatching(conn, schema, c.currentCleans(), IGNORE);
+        targetRepo.cleanRepo.insertBatch(conn, schema, c.cleans());
+    }
+
+    /**
+     * Hoàn tác theo thứ tự ngược, mỗi chunk 1 transaction.
+     * Bước nào lỗi -> rollback chunk đang hoàn tác và ném lỗi ra, người gọi giữ file nhật ký để chạy lại
+     * (mọi bước đều lặp lại được an toàn).
+     */
+    private void compensate(Connection conn, List<Compensation> chunks) throws Exception {
+        String schema = targetRepo.getTargetSchema();
+        for (int i = chunks.size() - 1; i >= 0; i--) {
+            Compensation c = chunks.get(i);
+            try {
+                targetRepo.configRepo.deleteByIdsOrThrow(conn, schema, TargetConfig.class, c.removeCfgIds());
+                targetRepo.commandRepo.deleteByIdsOrThrow(conn, schema, TargetCommand.class, c.removeCmdIds());
+                targetRepo.createRepo.deleteByIdsOrThrow(conn, schema, TargetCreate.class, c.removeCreateIds());
+                targetRepo.cleanRepo.deleteMatching(conn, schema, c.removeCleans(), IGNORE);
+
+                targetRepo.commandRepo.upsertBatch(conn, schema, c.restoreCmds());
+                targetRepo.configRepo.upsertBatch(conn, schema, c.restoreCfgs());
+                targetRepo.createRepo.upsertBatch(conn, schema, c.restoreCreates());
+                targetRepo.cleanRepo.insertBatch(conn, schema, c.restoreCleans());
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        logger.info("   -> [CHUNK] Đã hoàn tác {} chunk", chunks.size());
+    }
+
+    // --- Nhật ký bù trừ ---
+
+    private void appendJournal(Compensation c) throws IOException {
+        Path dir = journalFile.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        try (FileOutputStream fos = new FileOutputStream(journalFile.toFile(), true);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeByte(1);
+            writeIds(out, c.removeCmdIds());
+            RecordCodec.writeList(out, TargetCommand.class, c.restoreCmds());
+            writeIds(out, c.removeCfgIds());
+            RecordCodec.writeList(out, TargetConfig.class, c.restoreCfgs());
+            writeIds(out, c.removeCreateIds());
+            RecordCodec.writeList(out, TargetCreate.class, c.restoreCreates());
+            RecordCodec.writeList(out, TargetClean.class, c.removeCleans());
+            RecordCodec.writeList(out, TargetClean.class, c.restoreCleans());
+            out.flush();
+            fos.getFD().sync(); // phải nằm trên đĩa trước khi chunk commit
+        }
+    }
+
+    private List<Compensation> readJournal() throws IOException {
+        List<Compensation> chunks = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+            while (true) {
+                try {
+                    if (in.readByte() != 1) throw new IOException("File nhật ký chunk hỏng: " + journalFile);
+                } catch (EOFException eof) {
+                    break;
+                }
+                try {
+                    chunks.add(new Compensation(
+                            readIds(in), RecordCodec.readList(in, TargetCommand.class),
+                            readIds(in), RecordCodec.readList(in, TargetConfig.class),
+                            readIds(in), RecordCodec.readList(in, TargetCreate.class),
+                            RecordCodec.readList(in, TargetClean.class), RecordCodec.readList(in, TargetClean.class)));
+                } catch (EOFException eof) {
+                    // Bản ghi cuối ghi dở: chunk đó chưa thể commit, bỏ qua
+                    break;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private static void writeIds(DataOutputStream out, List<Long> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (Long id : ids) out.writeLong(id);
+    }
+
+    private static List<Long> readIds(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<Long> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) ids.add(in.readLong());
+        return ids;
+    }
+
+    // --- Helpers ---
+
+    // ID các dòng chunk thêm mới (chưa có trước đó) -> bù trừ bằng xóa
+    private static <T> List<Long> newIds(List<T> written, LongObjectMap<T> old, Function<T, Long> idFn) {
+        return written.stream().map(idFn).filter(id -> !old.containsKey(id)).collect(Collectors.toList());
+    }
+
+    // Ảnh cũ các dòng chunk sửa hoặc xóa -> bù trừ bằng ghi lại
+    private static <T> List<T> oldRows(List<T> written, List<Long> deleted, LongObjectMap<T> old, Function<T, Long> idFn) {
+        List<T> rows = new ArrayList<>();
+        written.stream().map(idFn).filter(old::containsKey).forEach(id -> rows.add(old.get(id)));
+        deleted.stream().filter(old::containsKey).forEach(id -> rows.add(old.get(id)));
+        return rows;
+    }
+
+    private static <T> LongObjectMap<T> byId(List<T> rows, Function<T, Long> idFn) {
+        LongObjectMap<T> map = new LongObjectMap<>(rows.size());
+        rows.forEach(r -> map.put(idFn.apply(r), r));
+        return map;
+    }
+
+    private static <T> Map<Long, List<T>> groupBy(List<T> rows, Function<T, Long> keyFn) {
+        Map<Long, List<T>> map = new HashMap<>();
+        rows.forEach(r -> map.computeIfAbsent(keyFn.apply(r), k -> new ArrayList<>()).add(r));
+        return map;
+    }
+
+    private static List<Long> ids(List<Object> raw) {
+        return raw.stream().map(id -> (Long) id).collect(Collectors.toList());
+    }
+
+    private static <T> List<T> concat(List<T> a, List<T> b) {
+        List<T> all = new ArrayList<>(a);
+        all.addAll(b);
+        return all;
+    }
+
+    private static <T> List<T> notIn(List<T> all, LongSet ids, Function<T, Long> idFn) {
+        return all.stream().filter(r -> !ids.contains(idFn.apply(r))).collect(Collectors.toList());
+    }
+}
@@ -1,6 +1,7 @@
 package com.viettel.sync.service;
 
-import com.viettel.sync.core.SecurityUtils;
+import com.viettel.sync.core.CredentialCodec;
+import com.viettel.sync.core.PathTrie;
 import com.viettel.sync.model.source.UnifiedSourceDTO;
 import com.viettel.sync.model.target.*;
 import org.slf4j.Logger;
@@ -9,7 +10,7 @@ import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.sql.Timestamp;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -20,6 +21,9 @@ public class DataTransformer {
     // Pattern IP dùng chung
     private static final Pattern IP_SEARCH_PATTERN = Pattern.compile("\\b\\d{1,3}(\\.\\d{1,3}){3}\\b");
 
+    // Viết lại câu CREATE sang schema ingestion + PARQUET
+    private static final HiveDdlRewriter CREATE_REWRITER = new HiveDdlRewriter("ingestion.", "STORED AS PARQUET");
+
     // --- CÁC HÀM TIỆN ÍCH DÙNG CHUNG (PUBLIC) ---
 
     public static boolean isFtpUrl(String url) {
@@ -95,6 +99,13 @@ public class DataTransformer {
     // --- HÀM TRANSFORM CONNECTION (ĐÃ SỬA LOGIC FTP GIỮ PASSWORD) ---
 
     public static TargetConnection transformConnection(TargetConnection src, TargetConnection existingTarget) {
+        return transformConnection(src, existingTarget, CredentialCodec.UNCACHED);
+    }
+
+    /**
+     * @param codec: codec của lần chạy (nhớ kết quả giải mã / mã hóa user, pass)
+     */
+    public static TargetConnection transformConnection(TargetConnection src, TargetConnection existingTarget, CredentialCodec codec) {
         if (src == null) return null;
 
         String url = src.url() == null ? "" : src.url().trim();
@@ -104,8 +115,8 @@ public class DataTransformer {
         String finalPass;
         String finalDriver;
         String finalConnName;
-        finalUser = SecurityUtils.decrypt(src.userName());
-        finalPass = SecurityUtils.encrypt(SecurityUtils.decrypt(src.pass()));
+        finalUser = codec.decrypt(src.userName());
+        finalPass = codec.reencrypt(src.pass());
 
         if (isFtp) {
             // LOGIC FTP
@@ -118,10 +129,7 @@ public class DataTransformer {
             String tempName = extractDbName(url);
             finalConnName = normalizeName(tempName);
             if (finalConnName.equals("unknown")) finalConnName = src.connectionName();
-
-            // JDBC: Luôn đồng bộ từ Source
-            finalUser = SecurityUtils.decrypt(src.userName());
-            finalPass = SecurityUtils.encrypt(SecurityUtils.decrypt(src.pass()));
+            // JDBC: Luôn đồng bộ từ Source (user/pass đã tính ở trên)
         }
 
         return new TargetConnection(
@@ -133,6 +141,13 @@ public class DataTransformer {
 
 
     public static TargetConfig transformConfig(UnifiedSourceDTO src, String targetConnName) {
+        return transformConfig(src, targetConnName, PartitionPath.Cache.NONE);
+    }
+
+    /**
+     * @param paths: cache phân tích path của lần chạy hiện tại
+     */
+    public static TargetConfig transformConfig(UnifiedSourceDTO src, String targetConnName, PartitionPath.Cache paths) {
         String rawTableName = src.tableName();
         String cleanTableName = rawTableName;
         if (cleanTableName != null && cleanTableName.contains(".")) {
@@ -146,7 +161,7 @@ public class DataTransformer {
 
         String sourcePath = src.locationPath();
 
-        String finalPath =  resolveFinalPath(sourcePath, basePath, src.cfgId());
+        String finalPath =  resolveFinalPath(sourcePath, basePath, src.cfgId(), paths);
 
 
         return new TargetConfig(
@@ -156,33 +171,21 @@ public class DataTransformer {
         );
     }
 
-    private static String resolveFinalPath(String sourcePath, String baseTargetPath, Long cfgId) {
+    private static String resolveFinalPath(String sourcePath, String baseTargetPath, Long cfgId, PartitionPath.Cache paths) {
         if (sourcePath == null || sourcePath.trim().isEmpty()) return baseTargetPath;
 
-        String rawPath = sourcePath.trim().replaceAll("^hdfs://[^/]+", "");
-
-        if (rawPath.startsWith("/")) rawPath = rawPath.substring(1);
-        if (rawPath.endsWith("/")) rawPath = rawPath.substring(0, rawPath.length() - 1);
-
-        String[] segments = rawPath.split("/");
-        long dollarCount = rawPath.chars().filter(ch -> ch == '$').count();
+        // Phân tích path 1 lần (có cache): các cấp thư mục + loại (tĩnh / key=${} / ${})
+        PartitionPath path = paths.parse(sourcePath);
+        List<PartitionPath.Segment> segments = path.segments();
+        int dollarCount = path.dollarCount();
 
         if (dollarCount == 0) {
             return baseTargetPath;
         }
 
-        // Phân tích xem có phải tất cả các đoạn chứa $ đều có dạng key=value không
-        boolean isAllKeyValue = true;
-        int firstDollarIndex = -1;
-
-        for (int i = 0; i < segments.length; i++) {
-            if (segments[i].contains("$")) {
-                if (firstDollarIndex == -1) firstDollarIndex = i;
-                if (!segments[i].matches(".*=.*\\$\\{.*}.*")) {
-                    isAllKeyValue = false;
-                }
-            }
-        }
+        // Tất cả các đoạn chứa $ đều có dạng key=value không
+        boolean isAllKeyValue = path.allDynamicKeyValue();
+        int firstDollarIndex = path.firstDynamic();
 
         // CASE 1: Key-Value Partition (x=${}/y=${}/...)
         // Điều kiện: Có ít nhất 1 $, và TẤT CẢ các segment chứa $ phải có dạng key=value
@@ -194,13 +197,13 @@ public class DataTransformer {
             StringBuilder pathSuffix = new StringBuilder();
 
             // Duyệt từ vị trí xuất hiện biến $ đầu tiên
-            for (int i = firstDollarIndex; i < segments.length; i++) {
-                String seg = segments[i];
-                boolean isDynamic = seg.contains("$");
+            for (int i = firstDollarIndex; i < segments.size(); i++) {
+                String seg = segments.get(i).text();
+                boolean isDynamic = segments.get(i).dynamic();
 
                 if (isDynamic) {
                     if (foundStaticAfterDynamic) {
-                        logger.warn("⚠️ [CONFIG ID {}] Path Invalid: Static folder '{}' chen giữa các partition. Path: {}", cfgId, segments[i-1], sourcePath);
+                        logger.warn("⚠️ [CONFIG ID {}] Path Invalid: Static folder '{}' chen giữa các partition. Path: {}", cfgId, segments.get(i - 1).text(), sourcePath);
                         return sourcePath; // Invalid: /x=${}/static/y=${}
                     }
                     foundDynamic = true;
@@ -208,7 +211,7 @@ public class DataTransformer {
                     if (foundDynamic) {
                         foundStaticAfterDynamic = true;
                         // Kiểm tra nếu sau static này vẫn còn segment nữa -> Sai (vì chỉ cho phép 1 cấp cuối)
-                        if (i < segments.length - 1) {
+                        if (i < segments.size() - 1) {
                             logger.warn("⚠️ [CONFIG ID {}] Path Invalid: Quá nhiều cấp thư mục tĩnh sau partition. Path: {}", cfgId, sourcePath);
                             return sourcePath; // Invalid: /x=${}/y/z
                         }
@@ -223,17 +226,12 @@ public class DataTransformer {
         // CASE 2: Single Implicit Partition (/${}/...)
         // Điều kiện: Chỉ có duy nhất 1 dấu $ và KHÔNG nằm trong cấu trúc key=value (đã check ở trên)
         if (dollarCount == 1) {
-            // Tìm vị trí của segment chứa $
-            int dollarIndex = -1;
-            for (int i = 0; i < segments.length; i++) {
-                if (segments[i].contains("$")) {
-                    dollarIndex = i;
-                    break;
-                }
-            }
+            // Vị trí của segment chứa $
+            int dollarIndex = firstDollarIndex;
+            String dollarSegment = segments.get(dollarIndex).text();
 
             // Segment chứa $ không được có dấu = (theo logic TH2)
-            if (segments[dollarIndex].contains("=")) {
+            if (dollarSegment.contains("=")) {
                 // Đây là trường hợp lạ (có = nhưng lại rớt xuống đây), log warn
                 logger.warn("⚠️ [CONFIG ID {}] Path Ambiguous: 1 $ có dấu '=' nhưng không khớp logic TH1. Path: {}", cfgId, sourcePath);
                 return sourcePath;
@@ -241,12 +239,12 @@ public class DataTransformer {
 
             // Logic: Cho phép có hoặc không có thêm MỘT cấp duy nhất phía sau
             // Tức là dollarIndex phải là last hoặc (last - 1)
-            if (dollarIndex == segments.length - 1) {
+            if (dollarIndex == segments.size() - 1) {
                 // Dạng: .../${YYYYMMDD}
-                return baseTargetPath + "/partition=" + segments[dollarIndex];
-            } else if (dollarIndex == segments.length - 2) {
+                return baseTargetPath + "/partition=" + dollarSegment;
+            } else if (dollarIndex == segments.size() - 2) {
                 // Dạng: .../${YYYYMMDD}/file.txt
-                return baseTargetPath + "/partition=" + segments[dollarIndex] + "/" + segments[dollarIndex + 1];
+                return baseTargetPath + "/partition=" + dollarSegment + "/" + segments.get(dollarIndex + 1).text();
             } else {
                 // Dạng: .../${}/a/b/c -> Sai
                 logger.warn("⚠️ [CONFIG ID {}] Path Invalid: Quá nhiều cấp sau biến đơn (${}). Path: {}", cfgId, sourcePath);
@@ -262,17 +260,13 @@ public class DataTransformer {
 
 
     public static String normalizePathForMap(String rawPath) {
+        return normalizePathForMap(rawPath, PartitionPath.Cache.NONE);
+    }
+
+    public static String normalizePathForMap(String rawPath, PartitionPath.Cache paths) {
         if (rawPath == null) return "";
-        String clean = rawPath.replaceAll("^hdfs://[^/]+", "");
-        int cutIdx = -1;
-        if (clean.contains("$")) cutIdx = clean.indexOf("$");
-        else if (clean.contains("partition=")) cutIdx = clean.indexOf("partition=");
-        if (cutIdx != -1) {
-            int slashIdx = clean.lastIndexOf("/", cutIdx);
-            if (slashIdx > 0) clean = clean.substring(0, slashIdx);
-        }
-        if (clean.endsWith("/")) clean = clean.substring(0, clean.length() - 1);
-        return clean;
+        // Cắt trước cấp thư mục chứa $ (hoặc partition=), tính sẵn khi phân tích path
+        return paths.parse(rawPath).mapKey();
     }
 
     public static TargetCommand transformCommand(UnifiedSourceDTO src, String oldMaskColumn) {
@@ -283,57 +277,19 @@ public class DataTransformer {
         );
     }
 
-    public static TargetCreate transformCreate(UnifiedSourceDTO src, Map<String, String> globalPathMap) {
-        if (src.createId() == null || src.createSql() == null) return null;
-
-        String rawSql = src.createSql();
+    public static TargetCreate transformCreate(UnifiedSourceDTO src, PathTrie<String> globalPathMap) {
+        return transformCreate(src, globalPathMap, PartitionPath.Cache.NONE);
+    }
 
-        // --- Bước 1: Chuẩn hóa tên bảng ---
-        String regexTable = "(?i)(TABLE\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?)" +
-                "([a-zA-Z0-9_]+)";
-        Matcher matcher = Pattern.compile(regexTable).matcher(rawSql);
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            String tableName = matcher.group(2);
-            String newTableName = "ingestion." + tableName.toLowerCase();
-            matcher.appendReplacement(sb, matcher.group(1) + newTableName);
-        }
-        matcher.appendTail(sb);
-        rawSql = sb.toString();
-
-        // --- Bước 2: Chuẩn hóa format lưu trữ ---
-        String regexFormat = "(?is)((ROW\\s+FORMAT\\s+DELIMITED(\\s+FIELDS\\s+TERMINATED\\s+BY\\s*'[^']*')?(\\s+LINES\\s+TERMINATED\\s+BY\\s*'[^']*')?)"
-                + "|(STORED\\s+AS\\s+TEXTFILE)"
-                + "|(STORED\\s+AS\\s+INPUTFORMAT\\s+'[^']*'\\s+OUTPUTFORMAT\\s+'[^']*')"
-                + "|(ROW\\s+FORMAT\\s+SERDE\\s+'[^']*'))";
-        String tempSql = rawSql.replaceAll(regexFormat, "STORED AS PARQUET");
-        tempSql = tempSql.replaceAll("(?i)(STORED AS PARQUET\\s*)+", "STORED AS PARQUET ");
-
-        // --- Bước 3: Tìm toàn bộ location path ---
-        // Regex: bắt cụm LOCATION '...'
-        Pattern pathPattern = Pattern.compile("(?i)LOCATION\\s+'([^']+)'");
-        Matcher pathMatcher = pathPattern.matcher(tempSql);
-
-        StringBuffer sbPaths = new StringBuffer();
-        while (pathMatcher.find()) {
-            String fullPath = pathMatcher.group(1); // lấy nội dung trong dấu nháy
-
-            // --- Bước 4: Kiểm tra path có khớp với globalPathMap không ---
-            String resolvedPath = fullPath;
-            for (Map.Entry<String, String> entry : globalPathMap.entrySet()) {
-                String oldBase = entry.getKey();
-                String newBase = entry.getValue();
-                if (fullPath.contains(oldBase)) {
-                    resolvedPath = resolveFinalPath(fullPath, newBase, src.createId());
-                    break; // chỉ thay thế lần đầu khớp
-                }
-            }
+    public static TargetCreate transformCreate(UnifiedSourceDTO src, PathTrie<String> globalPathMap, PartitionPath.Cache paths) {
+        if (src.createId() == null || src.createSql() == null) return null;
 
-            // --- Bước 5: Thay thế vào SQL ---
-            pathMatcher.appendReplacement(sbPaths, "LOCATION '" + Matcher.quoteReplacement(resolvedPath) + "'");
-        }
-        pathMatcher.appendTail(sbPaths);
-        tempSql = sbPaths.toString();
+        // Tên bảng -> ingestion.<tên thường>, format -> PARQUET, LOCATION -> path mới (1 lượt duyệt)
+        String tempSql = CREATE_REWRITER.rewrite(src.createSql(), fullPath -> {
+            // Path cũ dài nhất (đã chuẩn hóa) là tiền tố của LOCATION -> base path mới tương ứng
+            String newBase = globalPathMap.longestPrefix(paths.parse(fullPath).location());
+            return newBase != null ? resolveFinalPath(fullPath, newBase, src.createId(), paths) : fullPath;
+        });
 
         return new TargetCreate(
                 src.createId(), src.createIdConnection(), src.createDesc(),
@@ -343,7 +299,7 @@ public class DataTransformer {
 
     public static TargetCreate generateDropPartitionCommand(TargetConfig cfg, long nextCreateId) {
         if (cfg == null || cfg.tableName() == null) return null;
-        String sql = "ALTER TABLE " + cfg.tableName() + " DROP IF EXISTS PARTITION(partition=\"${YYYYMMDD:MM-6}\")";
+        String sql = dropPartitionSql(cfg.tableName());
         return new TargetCreate(
                 nextCreateId,
                 null,
@@ -353,17 +309,37 @@ public class DataTransformer {
         );
     }
 
+    /** Dòng Create là lệnh Drop Partition do tool sinh ra (không thuộc Connection nào, câu lệnh đúng mẫu của bảng) */
+    public static boolean isGeneratedDropPartition(TargetCreate create) {
+        return create.idConnection() == null && create.description() != null
+                && dropPartitionSql(create.description()).equals(create.sqlCommand());
+    }
+
+    private static String dropPartitionSql(String tableName) {
+        return "ALTER TABLE " + tableName + " DROP IF EXISTS PARTITION(partition=\"${YYYYMMDD:MM-6}\")";
+    }
+
     public static TargetClean generateCleanFromConfig(TargetConfig cfg) {
+        return generateCleanFromConfig(cfg, null);
+    }
+
+    /**
+     * @param idCommandCreate: ID lệnh Drop Partition sinh cùng Config (null nếu không có)
+     */
+    public static TargetClean generateCleanFromConfig(TargetConfig cfg, Long idCommandCreate) {
+        return generateCleanFromConfig(cfg, idCommandCreate, PartitionPath.Cache.NONE);
+    }
+
+    public static TargetClean generateCleanFromConfig(TargetConfig cfg, Long idCommandCreate, PartitionPath.Cache paths) {
         if (cfg == null || cfg.locationPath() == null) return null;
-        String path = cfg.locationPath();
-        long dollarCount = path.chars().filter(ch -> ch == '$').count();
-        if (dollarCount != 1) return null;
-        String newPath = path.replaceAll("\\$\\{[^}]+\\}", "\\${YYYYMMDD:MM-6}");
+        PartitionPath path = paths.parse(cfg.locationPath());
+        if (path.dollarCount() != 1) return null;
+        String newPath = path.replaceVariable("${YYYYMMDD:MM-6}");
         return new TargetClean(
                 newPath,
                 cfg.tableName(),
                 0L,
-                null,
+                idCommandCreate,
                 new Timestamp(System.currentTimeMillis())
         );
     }
@@ -0,0 +1,234 @@
+package com.viettel.sync.service;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Viết lại câu CREATE TABLE của Hive trong 1 lượt duyệt (thay cho 3 lượt regex cũ của transformCreate):
+ * - TABLE [IF [NOT] EXISTS] ten_bang   -> thêm tiền tố schema, tên bảng về chữ thường
+ * - ROW FORMAT DELIMITED/SERDE, STORED AS TEXTFILE/INPUTFORMAT, STORED AS PARQUET liền nhau -> 1 cụm format đích
+ * - LOCATION '...'                     -> path do locationResolver quyết định
+ * Chuỗi trong nháy ('..', "..", `..`) và comment (-- / /* * /) được chép nguyên, không bị viết lại.
+ * Từ khóa phải là nguyên 1 từ (VD: MYTABLE không bị coi là TABLE).
+ * Không giữ trạng thái giữa các lần gọi -> dùng chung 1 instance cho nhiều luồng.
+ */
+public final class HiveDdlRewriter {
+    private final String tablePrefix;
+    private final String storedAs;
+
+    /**
+     * @param tablePrefix tiền tố ghép trước tên bảng (VD: "ingestion.")
+     * @param storedAs    cụm format thay thế (VD: "STORED AS PARQUET"), luôn kèm đúng 1 khoảng trắng phía sau
+     */
+    public HiveDdlRewriter(String tablePrefix, String storedAs) {
+        this.tablePrefix = tablePrefix;
+        this.storedAs = storedAs + " ";
+    }
+
+    public String rewrite(String sql, UnaryOperator<String> locationResolver) {
+        return new Pass(sql, locationResolver).run();
+    }
+
+    // Trạng thái của 1 lượt duyệt: vị trí đọc + buffer ghi
+    private final class Pass {
+        private final String s;
+        private final int n;
+        private final UnaryOperator<String> locationResolver;
+        private final StringBuilder out;
+        // Vị trí đọc sau khi 1 luật viết lại đã khớp
+        private int pos;
+
+        Pass(String sql, UnaryOperator<String> locationResolver) {
+            this.s = sql;
+            this.n = sql.length();
+            this.locationResolver = locationResolver;
+            this.out = new StringBuilder(n + 32);
+        }
+
+        String run() {
+            int i = 0;
+            while (i < n) {
+                char c = s.charAt(i);
+                int end;
+                if (c == '\'' || c == '"' || c == '`') {
+                    end = quoted(i);
+                    out.append(s, i, end);
+                } else if (c == '-' && i + 1 < n && s.charAt(i + 1) == '-') {
+                    end = s.indexOf('\n', i);
+                    end = end < 0 ? n : end;
+                    out.append(s, i, end);
+                } else if (c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                    end = s.indexOf("*/", i + 2);
+                    end = end < 0 ? n : end + 2;
+                    out.append(s, i, end);
+                } else if (isWord(c)) {
+                    end = wordEnd(i);
+                    if (!keyword(i, end)) out.append(s, i, end);
+                    else end = pos;
+                } else {
+                    out.append(c);
+                    end = i + 1;
+                }
+                i = end;
+            }
+            return out.toString();
+        }
+
+        /** Thử các luật bắt đầu bằng từ [start, end); khớp -> đã ghi ra out, vị trí tiếp theo ở pos */
+        private boolean keyword(int start, int end) {
+            int len = end - start;
+            if (len == 5 && s.regionMatches(true, start, "TABLE", 0, 5)) return table(end);
+            if ((len == 3 && s.regionMatches(true, start, "ROW", 0, 3))
+                    || (len == 6 && s.regionMatches(true, start, "STORED", 0, 6))) {
+                return formats(start);
+            }
+            if (len == 8 && s.regionMatches(true, start, "LOCATION", 0, 8)) return location(end);
+            return false;
+        }
+
+        // TABLE\s+(IF\s+(NOT\s+)?EXISTS\s+)?ten_bang
+        private boolean table(int p) {
+            int q = spaces(p);
+            if (q < 0) return false;
+            int ifEnd = word(q, "IF");
+            if (ifEnd >= 0) {
+                int r = spaces(ifEnd);
+                int notEnd = r < 0 ? -1 : word(r, "NOT");
+                if (notEnd >= 0) r = spaces(notEnd);
+                int existsEnd = r < 0 ? -1 : word(r, "EXISTS");
+                int nameStart = existsEnd < 0 ? -1 : spaces(existsEnd);
+                if (nameStart >= 0 && nameStart < n && isWord(s.charAt(nameStart))) q = nameStart;
+            }
+            if (q >= n || !isWord(s.charAt(q))) return false;
+            int nameEnd = wordEnd(q);
+            out.append(s, p - 5, q).append(tablePrefix);
+            for (int k = q; k < nameEnd; k++) out.append(Character.toLowerCase(s.charAt(k)));
+            pos = nameEnd;
+            return true;
+        }
+
+        // Chuỗi các mệnh đề format liền nhau (chỉ cách bởi khoảng trắng) -> 1 cụm format đích
+        private boolean formats(int p) {
+            int q = format(p);
+            if (q < 0) return false;
+            while (true) {
+                q = skipSpaces(q);
+                int next = q < n && isWord(s.charAt(q)) ? format(q) : -1;
+                if (next < 0) break;
+                q = next;
+            }
+            out.append(storedAs);
+            pos = q;
+            return true;
+        }
+
+        /** 1 mệnh đề format bắt đầu tại p, @return vị trí sau mệnh đề hoặc -1 */
+        private int format(int p) {
+            int q = word(p, "ROW");
+            if (q >= 0) {
+                q = then(q, "FORMAT");
+                if (q < 0) return -1;
+                int delimited = then(q, "DELIMITED");
+                if (delimited >= 0) {
+                    int r = terminatedBy(delimited, "FIELDS");
+                    if (r >= 0) delimited = r;
+                    r = terminatedBy(delimited, "LINES");
+                    return r >= 0 ? r : delimited;
+                }
+                int serde = then(q, "SERDE");
+                return serde < 0 ? -1 : thenString(serde);
+            }
+            q = word(p, "STORED");
+            if (q < 0 || (q = then(q, "AS")) < 0) return -1;
+            int r = then(q, "TEXTFILE");
+            if (r >= 0) return r;
+            r = then(q, "PARQUET");
+            if (r >= 0) return r;
+            r = then(q, "INPUTFORMAT");
+            if (r < 0 || (r = thenString(r)) < 0 || (r = then(r, "OUTPUTFORMAT")) < 0) return -1;
+            return thenString(r);
+        }
+
+        // \s+<kind>\s+TERMINATED\s+BY\s*'...'
+        private int terminatedBy(int p, String kind) {
+            int q = then(p, kind);
+            if (q < 0 || (q = then(q, "TERMINATED")) < 0 || (q = then(q, "BY")) < 0) return -1;
+            return literal(skipSpaces(q));
+        }
+
+        // LOCATION\s+'path' (path khác rỗng)
+        private boolean location(int p) {
+            int q = spaces(p);
+            int end = q < 0 ? -1 : literal(q);
+            if (end < 0 || end - q < 3) return false;
+            out.append("LOCATION '").append(locationResolver.apply(s.substring(q + 1, end - 1))).append('\'');
+            pos = end;
+            return true;
+        }
+
+        // --- Các bước khớp nhỏ: trả về vị trí sau phần khớp, -1 nếu không khớp ---
+
+        /** \s+ rồi đúng từ khóa kw */
+        private int then(int p, String kw) {
+            int q = spaces(p);
+            return q < 0 ? -1 : word(q, kw);
+        }
+
+        /** \s+ rồi chuỗi '...' */
+        private int thenString(int p) {
+            int q = spaces(p);
+            return q < 0 ? -1 : literal(q);
+        }
+
+        /** Chuỗi '...' đã đóng nháy tại p */
+        private int literal(int p) {
+            if (p >= n || s.charAt(p) != '\'') return -1;
+            int end = quoted(p);
+            return end - p >= 2 && s.charAt(end - 1) == '\'' ? end : -1;
+        }
+
+        /** Đúng từ kw (không phân biệt hoa thường) tại p, không dính chữ phía sau */
+        private int word(int p, String kw) {
+            int end = p + kw.length();
+            if (end > n || !s.regionMatches(true, p, kw, 0, kw.length())) return -1;
+            return end < n && isWord(s.charAt(end)) ? -1 : end;
+        }
+
+        /** Ít nhất 1 khoảng trắng */
+        private int spaces(int p) {
+            int q = skipSpaces(p);
+            return q == p ? -1 : q;
+        }
+
+        private int skipSpaces(int p) {
+            while (p < n && isSpace(s.charAt(p))) p++;
+            return p;
+        }
+
+        private int wordEnd(int p) {
+            while (p < n && isWord(s.charAt(p))) p++;
+            return p;
+        }
+
+        /** Chuỗi trong nháy bắt đầu tại p (hỗ trợ escape \), @return vị trí sau nháy đóng (hoặc cuối câu nếu không đóng) */
+        private int quoted(int p) {
+            char quote = s.charAt(p);
+            int q = p + 1;
+            while (q < n) {
+                char c = s.charAt(q);
+                if (c == '\\' && quote != '`') q += 2;
+                else if (c == quote) return q + 1;
+                else q++;
+            }
+            return n;
+        }
+    }
+
+    private static boolean isWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    // Cùng tập ký tự với \s của java.util.regex
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
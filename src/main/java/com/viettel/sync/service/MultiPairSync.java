@@ -0,0 +1,82 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.config.SyncPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Đồng bộ nhiều cặp schema trong cùng 1 tiến trình, tối đa {@code workers} cặp chạy đồng thời.
+ * Mỗi cặp dùng SyncService + transaction riêng: 1 cặp lỗi chỉ rollback cặp đó.
+ */
+public class MultiPairSync {
+    private static final Logger logger = LoggerFactory.getLogger(MultiPairSync.class);
+
+    public record PairResult(SyncPair pair, boolean success, long millis) {}
+
+    private MultiPairSync() {}
+
+    public static List<PairResult> run(List<SyncPair> pairs, int workers, boolean forceFull) {
+        return runServices(pairs.stream().map(SyncService::new).toList(), workers, forceFull);
+    }
+
+    /**
+     * Chạy trên các SyncService có sẵn (chế độ daemon giữ service giữa các lần chạy)
+     */
+    public static List<PairResult> runServices(List<SyncService> services, int workers, boolean forceFull) {
+        logger.info("Đồng bộ {} cặp schema, tối đa {} cặp đồng thời", services.size(), workers);
+
+        List<Future<PairResult>> futures = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, services.size())))) {
+            for (SyncService service : services) {
+                futures.add(pool.submit(() -> runOne(service, forceFull)));
+            }
+        }
+
+        List<PairResult> results = new ArrayList<>();
+        for (int i = 0; i < services.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (Exception e) {
+                // runOne đã bắt mọi lỗi, nhánh này chỉ để an toàn
+                results.add(new PairResult(services.get(i).getPair(), false, 0));
+            }
+        }
+        report(results);
+        return results;
+    }
+
+    private static PairResult runOne(SyncService service, boolean forceFull) {
+        SyncPair pair = service.getPair();
+        // Đặt tên thread theo cặp để phân biệt log các cặp chạy xen nhau
+        Thread current = Thread.currentThread();
+        String oldName = current.getName();
+        current.setName("sync-" + pair.name());
+        long start = System.currentTimeMillis();
+        try {
+            logger.info("▶ Cặp [{}]: {} -> {}", pair.name(), pair.db().sourceSchema(), pair.db().targetSchema());
+            boolean ok = service.runSync(forceFull);
+            return new PairResult(pair, ok, System.currentTimeMillis() - start);
+        } catch (Throwable t) {
+            logger.error("❌ Cặp [{}] gặp lỗi không mong muốn", pair.name(), t);
+            return new PairResult(pair, false, System.currentTimeMillis() - start);
+        } finally {
+            current.setName(oldName);
+        }
+    }
+
+    private static void report(List<PairResult> results) {
+        logger.info("========== KẾT QUẢ THEO CẶP ==========");
+        for (PairResult r : results) {
+            logger.info("{} {} ({} -> {}): {} ms", r.success() ? "✅" : "❌", r.pair().name(),
+                    r.pair().db().sourceSchema(), r.pair().db().targetSchema(), r.millis());
+        }
+        long failed = results.stream().filter(r -> !r.success()).count();
+        logger.info("Thành công {}/{} cặp", results.size() - failed, results.size());
+    }
+}
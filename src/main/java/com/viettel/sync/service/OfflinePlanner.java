@@ -0,0 +1,166 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.config.AppConfigLoader;
+import com.viettel.sync.core.CredentialCodec;
+import com.viettel.sync.core.IdAllocator;
+import com.viettel.sync.core.LongObjectMap;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.core.RowDiff;
+import com.viettel.sync.core.RowMapper;
+import com.viettel.sync.core.RowMappers;
+import com.viettel.sync.model.target.*;
+import com.viettel.sync.service.PipelinePlanner.PipelinePlan;
+import com.viettel.sync.service.SyncLogicHelper.ConnectionAnalysisResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Lệnh "plan": chạy SyncLogicHelper + DataTransformer trên file snapshot (không truy cập DB)
+ * và trả về danh sách thay đổi Target sẽ nhận được nếu đồng bộ thật.
+ */
+public final class OfflinePlanner {
+    private static final Logger logger = LoggerFactory.getLogger(OfflinePlanner.class);
+
+    // Cùng quy ước so sánh với chế độ DIFF của SyncService
+    private static final Set<String> COMPARE_IGNORE = Set.of("INSERT_DATE");
+
+    private OfflinePlanner() {}
+
+    /**
+     * @return báo cáo dạng text (tổng hợp + chi tiết từng dòng thay đổi)
+     */
+    public static String plan(Path snapshotFile) throws Exception {
+        long start = System.nanoTime();
+        SnapshotStore.Loaded loaded = SnapshotStore.read(snapshotFile);
+        SyncSnapshot s = loaded.snapshot();
+        logger.info("Đọc snapshot {} trong {} ms", snapshotFile, (System.nanoTime() - start) / 1_000_000);
+
+        // 1. TimeParam: chỉ thêm mới
+        List<TargetTimeParam> timeInserts = s.sourceTimeParams().stream()
+                .filter(t -> !s.targetTimeParamNames().contains(t.name().trim().toLowerCase()))
+                .collect(Collectors.toList());
+
+        // 2. Connection
+        CredentialCodec codec = AppConfigLoader.getCredentialCodec();
+        ConnectionAnalysisResult conns = SyncLogicHelper.analyzeConnections(s.sourceConnections(), s.targetConnections(), codec);
+        List<TargetConnection> currentConns = s.targetConnections().stream()
+                .filter(t -> !conns.fixIds().contains(t.id()))
+                .collect(Collectors.toList());
+        RowDiff.Result<TargetConnection> connDiff = RowDiff.diff(RowMappers.of(TargetConnection.class),
+                conns.toInsert(), currentConns, COMPARE_IGNORE);
+
+        // 3. Pipeline (tên Connection tính từ kết quả bước 2 trong bộ nhớ)
+        LongObjectMap<String> connNames = PipelinePlanner.connectionNames(
+                PipelinePlanner.connectionsAfterSync(conns, s.targetConnections(), codec));
+        PipelinePlan plan = PipelinePlanner.plan(s, conns.fixIds(), connNames, IdAllocator.inMemory());
+
+        RowDiff.Result<TargetCommand> cmdDiff = RowDiff.diff(RowMappers.of(TargetCommand.class), plan.insCmd(),
+                notIn(s.targetCommands(), plan.safeLists().safeCommandIds(), TargetCommand::id), COMPARE_IGNORE);
+        RowDiff.Result<TargetConfig> cfgDiff = RowDiff.diff(RowMappers.of(TargetConfig.class), plan.insCfg(),
+                notIn(s.targetConfigs(), plan.safeLists().safeConfigIds(), TargetConfig::id), COMPARE_IGNORE);
+        RowDiff.Result<TargetCreate> createDiff = RowDiff.diff(RowMappers.of(TargetCreate.class), plan.insCreate(),
+                notIn(s.targetCreates(), plan.safeLists().safeCreateIds(), TargetCreate::id), COMPARE_IGNORE);
+        boolean cleanChanged = !RowDiff.sameContent(RowMappers.of(TargetClean.class),
+                plan.insClean(), s.targetCleans(), COMPARE_IGNORE);
+
+        // Báo cáo
+        StringBuilder out = new StringBuilder();
+        out.append("# KẾ HOẠCH ĐỒNG BỘ (offline)\n");
+        out.append("Snapshot: ").append(loaded.header().sourceSchema()).append(" -> ").append(loaded.header().targetSchema())
+                .append(", chụp lúc ").append(Instant.ofEpochMilli(loaded.header().createdAt())).append("\n\n");
+
+        if (!conns.logs().isEmpty()) {
+            out.append("## Xung đột / cảnh báo Connection (").append(conns.logs().size()).append(")\n");
+            conns.logs().forEach(l -> out.append("- ").append(l).append("\n"));
+            out.append("\n");
+        }
+
+        out.append("## Tổng hợp (+ thêm, ~ sửa, - xóa, = giữ nguyên)\n");
+        out.append(String.format("%-28s +%d%n", "D_TIME_PARAM_CONFIG", timeInserts.size()));
+        summary(out, "D_CONNECTION", connDiff);
+        summary(out, "D_DB_2_HDFS_COMMAND", cmdDiff);
+        summary(out, "D_DB_2_HDFS_CONFIG", cfgDiff);
+        summary(out, "D_DB_2_HDFS_COMMAND_CREATE", createDiff);
+        out.append(String.format("%-28s %s%n", "D_CLEAN_FOLDER",
+                cleanChanged ? "ghi lại " + plan.insClean().size() + " dòng (hiện có " + s.targetCleans().size() + ")" : "không đổi"));
+        out.append("Safe: Command=").append(plan.safeLists().safeCommandIds().size())
+                .append(", Config=").append(plan.safeLists().safeConfigIds().size())
+                .append(", Create=").append(plan.safeLists().safeCreateIds().size())
+                .append(", Fix Connection=").append(conns.fixIds().size()).append("\n\n");
+
+        out.append("## Chi tiết\n");
+        RowMapper<TargetTimeParam> timeMapper = RowMappers.of(TargetTimeParam.class);
+        timeInserts.forEach(t -> out.append("INSERT D_TIME_PARAM_CONFIG ").append(describe(timeMapper, t)).append("\n"));
+        details(out, RowMappers.of(TargetConnection.class), connDiff, s.targetConnections());
+        details(out, RowMappers.of(TargetCommand.class), cmdDiff, s.targetCommands());
+        details(out, RowMappers.of(TargetConfig.class), cfgDiff, s.targetConfigs());
+        details(out, RowMappers.of(TargetCreate.class), createDiff, s.targetCreates());
+
+        logger.info("Lập kế hoạch xong trong {} ms", (System.nanoTime() - start) / 1_000_000);
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String table, RowDiff.Result<?> diff) {
+        out.append(String.format("%-28s +%d ~%d -%d =%d%n", table,
+                diff.inserts().size(), diff.updates().size(), diff.deleteIds().size(), diff.unchanged()));
+    }
+
+    private static <T> void details(StringBuilder out, RowMapper<T> mapper, RowDiff.Result<T> diff, List<T> current) {
+        String table = mapper.tableName();
+        Map<Object, T> byId = new HashMap<>();
+        current.forEach(r -> byId.put(mapper.idOf(r), r));
+
+        for (T row : diff.inserts()) {
+            out.append("INSERT ").append(table).append(" ").append(describe(mapper, row)).append("\n");
+        }
+        for (T row : diff.updates()) {
+            out.append("UPDATE ").append(table).append(" ").append(mapper.idColumn()).append("=").append(mapper.idOf(row));
+            Object[] oldValues = mapper.values(byId.get(mapper.idOf(row)));
+            Object[] newValues = mapper.values(row);
+            List<String> cols = mapper.columns();
+            for (int i = 0; i < cols.size(); i++) {
+                if (COMPARE_IGNORE.contains(cols.get(i)) || sameValue(oldValues[i], newValues[i])) continue;
+                out.append("\n    ").append(cols.get(i)).append(": ")
+                        .append(show(cols.get(i), oldValues[i])).append(" -> ").append(show(cols.get(i), newValues[i]));
+            }
+            out.append("\n");
+        }
+        for (Object id : diff.deleteIds()) {
+            out.append("DELETE ").append(table).append(" ").append(mapper.idColumn()).append("=").append(id).append("\n");
+        }
+    }
+
+    private static <T> String describe(RowMapper<T> mapper, T row) {
+        Object[] values = mapper.values(row);
+        List<String> cols = mapper.columns();
+        StringJoiner j = new StringJoiner(", ", "{", "}");
+        for (int i = 0; i < cols.size(); i++) {
+            if (COMPARE_IGNORE.contains(cols.get(i))) continue;
+            j.add(cols.get(i) + "=" + show(cols.get(i), values[i]));
+        }
+        return j.toString();
+    }
+
+    // Chuỗi rỗng = NULL như Oracle (cùng quy ước với RowDiff)
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof String s && s.isEmpty()) a = null;
+        if (b instanceof String s && s.isEmpty()) b = null;
+        return Objects.equals(a, b);
+    }
+
+    // Không in mật khẩu ra báo cáo
+    private static String show(String column, Object value) {
+        if (value == null) return "null";
+        if (column.contains("PASS")) return "******";
+        return "'" + value + "'";
+    }
+
+    private static <T> List<T> notIn(List<T> all, LongSet ids, java.util.function.Function<T, Long> idFn) {
+        return all.stream().filter(r -> !ids.contains(idFn.apply(r))).collect(Collectors.toList());
+    }
+}
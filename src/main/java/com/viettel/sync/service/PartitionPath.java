@@ -0,0 +1,169 @@
+package com.viettel.sync.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Location HDFS đã phân tích 1 lần thành các cấp thư mục:
+ * STATIC (không có $), KEY_VALUE (dạng key=${var}), VARIABLE (có $ nhưng không phải key=${var}, VD: ${YYYYMMDD}).
+ * Chuỗi được trim và bỏ phần hdfs://host trước khi tách; segment tính trên phần giữa dấu / đầu và / cuối.
+ * Kết quả cache theo chuỗi gốc trong {@link Cache} của 1 lần lập kế hoạch (Config, Create, Clean cùng 1 path
+ * chỉ phân tích 1 lần), hết lần chạy thì bỏ -> chế độ --daemon không giữ path cũ.
+ *
+ * @param raw         chuỗi gốc (chưa trim)
+ * @param location    chuỗi đã trim, bỏ hdfs://host
+ * @param dollarCount số ký tự $ trong path
+ * @param mapKey      khóa cho bảng map path cũ -> mới: cắt trước cấp thư mục chứa biến $ (hoặc partition=), bỏ / cuối
+ */
+public record PartitionPath(String raw, String location, List<Segment> segments, int dollarCount, String mapKey) {
+
+    public enum Kind { STATIC, KEY_VALUE, VARIABLE }
+
+    /**
+     * @param offset vị trí bắt đầu của segment trong {@code raw}
+     */
+    public record Segment(String text, Kind kind, int offset) {
+        public boolean dynamic() {
+            return kind != Kind.STATIC;
+        }
+    }
+
+    /**
+     * Cache phân tích path cho 1 lần chạy: tạo trong PipelinePlanner.plan, dùng chung cho các luồng transform.
+     * {@link #NONE} không nhớ gì (dùng cho các lời gọi lẻ ngoài 1 lần lập kế hoạch).
+     */
+    public static final class Cache {
+        public static final Cache NONE = new Cache(false);
+
+        private final Map<String, PartitionPath> entries;
+
+        public Cache() {
+            this(true);
+        }
+
+        private Cache(boolean enabled) {
+            this.entries = enabled ? new ConcurrentHashMap<>() : null;
+        }
+
+        public PartitionPath parse(String raw) {
+            return entries == null ? PartitionPath.parse(raw) : entries.computeIfAbsent(raw, PartitionPath::parse);
+        }
+
+        public int size() {
+            return entries == null ? 0 : entries.size();
+        }
+    }
+
+    private static final String HDFS = "hdfs://";
+
+    /** Phân tích không qua cache */
+    public static PartitionPath parse(String raw) {
+        return doParse(raw);
+    }
+
+    /** Vị trí segment đầu tiên có $, -1 nếu không có */
+    public int firstDynamic() {
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i).dynamic()) return i;
+        }
+        return -1;
+    }
+
+    /** Mọi segment có $ đều ở dạng key=${var} */
+    public boolean allDynamicKeyValue() {
+        for (Segment s : segments) {
+            if (s.kind == Kind.VARIABLE) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Thay biến ${...} duy nhất trong path gốc (chỉ dùng khi dollarCount == 1)
+     * @return path gốc nếu $ không mở đầu 1 biến ${...} hợp lệ
+     */
+    public String replaceVariable(String replacement) {
+        int first = firstDynamic();
+        if (first < 0) return raw;
+        Segment s = segments.get(first);
+        int dollar = s.offset + s.text.indexOf('$');
+        if (dollar + 1 >= raw.length() || raw.charAt(dollar + 1) != '{') return raw;
+        int close = raw.indexOf('}', dollar + 2);
+        if (close <= dollar + 2) return raw;
+        return raw.substring(0, dollar) + replacement + raw.substring(close + 1);
+    }
+
+    private static PartitionPath doParse(String raw) {
+        int lo = 0;
+        int hi = raw.length();
+        // trim
+        while (lo < hi && raw.charAt(lo) <= ' ') lo++;
+        while (hi > lo && raw.charAt(hi - 1) <= ' ') hi--;
+        // hdfs://host (host khác rỗng)
+        if (raw.startsWith(HDFS, lo)) {
+            int slash = raw.indexOf('/', lo + HDFS.length());
+            int authorityEnd = slash < 0 || slash > hi ? hi : slash;
+            if (authorityEnd > lo + HDFS.length()) lo = authorityEnd;
+        }
+
+        // Bỏ 1 dấu / đầu và 1 dấu / cuối rồi tách (cấp rỗng ở cuối bị bỏ như String.split)
+        int from = lo < hi && raw.charAt(lo) == '/' ? lo + 1 : lo;
+        int to = hi > from && raw.charAt(hi - 1) == '/' ? hi - 1 : hi;
+        List<Segment> segments = new ArrayList<>();
+        int dollarCount = 0;
+        int lastNonEmpty = -1;
+        for (int start = from; from < to && start <= to; ) {
+            int slash = raw.indexOf('/', start);
+            int end = slash < 0 || slash > to ? to : slash;
+            String text = raw.substring(start, end);
+            int dollars = count(text, '$');
+            dollarCount += dollars;
+            segments.add(new Segment(text, dollars == 0 ? Kind.STATIC : isKeyValue(text) ? Kind.KEY_VALUE : Kind.VARIABLE, start));
+            if (!text.isEmpty()) lastNonEmpty = segments.size() - 1;
+            start = end + 1;
+        }
+        segments = segments.subList(0, lastNonEmpty + 1);
+
+        return new PartitionPath(raw, raw.substring(lo, hi), Collections.unmodifiableList(segments), dollarCount, mapKey(raw, lo, hi, segments));
+    }
+
+    // Cắt trước segment chứa $ (nếu có), nếu không thì trước segment chứa partition=; chỉ cắt khi dấu / đó không ở đầu path
+    private static String mapKey(String raw, int lo, int hi, List<Segment> segments) {
+        Segment cut = null;
+        for (Segment s : segments) {
+            if (s.dynamic()) {
+                cut = s;
+                break;
+            }
+        }
+        if (cut == null) {
+            for (Segment s : segments) {
+                if (s.text.contains("partition=")) {
+                    cut = s;
+                    break;
+                }
+            }
+        }
+        int end = cut != null && cut.offset - 1 > lo ? cut.offset - 1 : hi;
+        if (end > lo && raw.charAt(end - 1) == '/') end--;
+        return raw.substring(lo, end);
+    }
+
+    // Tương đương matches(".*=.*\\$\\{.*}.*"): có '=' rồi "${" rồi '}' theo thứ tự
+    private static boolean isKeyValue(String text) {
+        int eq = text.indexOf('=');
+        if (eq < 0) return false;
+        int open = text.indexOf("${", eq + 1);
+        return open >= 0 && text.indexOf('}', open + 2) >= 0;
+    }
+
+    private static int count(String text, char c) {
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,93 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.core.LongObjectMap;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.model.target.TargetCommand;
+import com.viettel.sync.model.target.TargetConfig;
+
+import java.util.Collection;
+
+/**
+ * Đồ thị quan hệ Pipeline dựng 1 lần trong bộ nhớ:
+ * Connection -(ID_CONNECTION)-> Command -(ID_COMMAND)-> Config -(ID_COMMAND_CREATE)-> Create.
+ * Giữ cả chiều cha (tra Connection của 1 dòng) và chiều con (duyệt bao đóng từ 1 tập ID) để không phải
+ * lọc lại cả danh sách mỗi lần cần.
+ * Cùng ID xuất hiện nhiều lần (VD: dòng Target rồi dòng vừa transform) -> lần sau ghi đè lần trước.
+ */
+public final class PipelineGraph {
+    // Chiều cha
+    private final LongObjectMap<Long> connectionOfCommand = new LongObjectMap<>();
+    private final LongObjectMap<Long> commandOfConfig = new LongObjectMap<>();
+    private final LongObjectMap<Long> createOfConfig = new LongObjectMap<>();
+    // Chiều con (dựng từ chiều cha sau cùng)
+    private final LongObjectMap<LongSet> commandsByConnection = new LongObjectMap<>();
+    private final LongObjectMap<LongSet> configsByCommand = new LongObjectMap<>();
+
+    private PipelineGraph() {}
+
+    public static PipelineGraph of(Collection<TargetCommand> commands, Collection<TargetConfig> configs) {
+        PipelineGraph g = new PipelineGraph();
+        for (TargetCommand c : commands) g.connectionOfCommand.put(c.id(), c.idConnection());
+        for (TargetConfig c : configs) {
+            g.commandOfConfig.put(c.id(), c.idCommand());
+            g.createOfConfig.put(c.id(), c.idCommandCreate());
+        }
+        g.connectionOfCommand.forEach((cmd, conn) -> {
+            if (conn != null) children(g.commandsByConnection, conn).add(cmd);
+        });
+        g.commandOfConfig.forEach((cfg, cmd) -> {
+            if (cmd != null) children(g.configsByCommand, cmd).add(cfg);
+        });
+        return g;
+    }
+
+    // --- Bao đóng xuống dưới ---
+
+    /** Command thuộc các Connection */
+    public LongSet commandsOf(LongSet connectionIds) {
+        return closure(commandsByConnection, connectionIds);
+    }
+
+    /** Config dùng các Command */
+    public LongSet configsOf(LongSet commandIds) {
+        return closure(configsByCommand, commandIds);
+    }
+
+    /** Create được các Config tham chiếu */
+    public LongSet createsOf(LongSet configIds) {
+        LongSet out = new LongSet(configIds.size());
+        configIds.forEach(cfg -> {
+            Long create = createOfConfig.get(cfg);
+            if (create != null) out.add(create);
+        });
+        return out;
+    }
+
+    // --- Tra ngược lên Connection ---
+
+    public Long connectionOfCommand(Long commandId) {
+        return connectionOfCommand.get(commandId);
+    }
+
+    public Long connectionOfConfig(Long configId) {
+        return connectionOfCommand.get(commandOfConfig.get(configId));
+    }
+
+    private static LongSet closure(LongObjectMap<LongSet> index, LongSet parents) {
+        LongSet out = new LongSet();
+        parents.forEach(p -> {
+            LongSet c = index.get(p);
+            if (c != null) out.addAll(c);
+        });
+        return out;
+    }
+
+    private static LongSet children(LongObjectMap<LongSet> index, long parent) {
+        LongSet c = index.get(parent);
+        if (c == null) {
+            c = new LongSet(4);
+            index.put(parent, c);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,232 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.core.CredentialCodec;
+import com.viettel.sync.core.IdAllocator;
+import com.viettel.sync.core.LongObjectMap;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.core.PathTrie;
+import com.viettel.sync.model.source.UnifiedSourceDTO;
+import com.viettel.sync.model.target.*;
+import com.viettel.sync.service.SyncLogicHelper.ConnectionAnalysisResult;
+import com.viettel.sync.service.SyncLogicHelper.PipelineSafeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Phần tính toán thuần (không truy cập DB) của bước Pipeline: từ snapshot + danh sách Fix Connection
+ * sinh ra các dòng Command/Config/Create/Clean cần có ở Target.
+ * Dùng chung cho SyncService (chạy thật) và lệnh plan (chạy offline trên file snapshot).
+ */
+final class PipelinePlanner {
+    private static final Logger logger = LoggerFactory.getLogger(PipelinePlanner.class);
+
+    // Dưới ngưỡng này transform tuần tự (chi phí chia việc lớn hơn lợi ích)
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    record PipelinePlan(
+            PipelineSafeResult safeLists,
+            List<TargetCommand> insCmd,
+            List<TargetConfig> insCfg,
+            List<TargetCreate> insCreate,
+            List<TargetClean> insClean
+    ) {}
+
+    private PipelinePlanner() {}
+
+    static PipelinePlan plan(SyncSnapshot snapshot, LongSet fixConnectionIds, LongObjectMap<String> connNameMap,
+                             IdAllocator createIds) throws Exception {
+        return plan(snapshot, fixConnectionIds, connNameMap, createIds, 0);
+    }
+
+    /**
+     * @param connNameMap: ID Connection -> tên Connection ở Target sau bước đồng bộ Connection
+     * @param createIds: cấp ID cho lệnh Drop Partition tự sinh
+     * @param minCreateIdFloor: ID tự sinh luôn lớn hơn giá trị này (snapshot chỉ có 1 phần dữ liệu -> truyền MAX(ID) cả bảng)
+     */
+    static PipelinePlan plan(SyncSnapshot snapshot, LongSet fixConnectionIds, LongObjectMap<String> connNameMap,
+                             IdAllocator createIds, long minCreateIdFloor) throws Exception {
+        List<UnifiedSourceDTO> validData = snapshot.pipelineData();
+        List<TargetCommand> allCmds = snapshot.targetCommands();
+
+        // C. Tính toán Safe List (Truyền thêm validData vào để check Table Name)
+        PipelineGraph graph = PipelineGraph.of(allCmds, snapshot.targetConfigs());
+        PipelineSafeResult safeLists = SyncLogicHelper.computePipelineSafeLists(
+                fixConnectionIds, graph, snapshot.targetConfigs(), snapshot.sourceConfigs()
+        );
+
+        logger.info("   -> Safe Items: \n ID COMMAND {} = {} \n ID CONFIG {} ={}, \n ID COMMAND CREATE {} ={}",
+                safeLists.safeCommandIds().size(), safeLists.safeCommandIds(), safeLists.safeConfigIds().size(),
+                safeLists.safeConfigIds(), safeLists.safeCreateIds().size(), safeLists.safeCreateIds());
+
+        // ID cho lệnh Drop Partition tự sinh phải lớn hơn mọi ID Create có ở Target sau khi ghi:
+        // các Create Safe (giữ nguyên) và các Create copy từ Source -> tính trong bộ nhớ, không cần MAX(ID)
+        long createIdFloor = Math.max(minCreateIdFloor, Math.max(
+                safeLists.safeCreateIds().stream().max().orElse(0),
+                validData.stream().map(UnifiedSourceDTO::createId).filter(Objects::nonNull).mapToLong(Long::longValue).max().orElse(0)));
+
+        // D. Chuẩn bị dữ liệu Insert mới (Chỉ insert những cái không nằm trong Safe List)
+        List<TargetCommand> insCmd = new ArrayList<>();
+        List<TargetConfig> insCfg = new ArrayList<>();
+        List<TargetCreate> insCreate = new ArrayList<>();
+        List<TargetClean> insClean = new ArrayList<>();
+
+        LongObjectMap<String> existingMaskMap = new LongObjectMap<>(allCmds.size());
+        allCmds.forEach(c -> existingMaskMap.putIfAbsent(c.id(), c.maskColumn() != null ? c.maskColumn() : ""));
+
+        // Path cũ -> path mới theo cây thư mục: tra LOCATION của Create theo tiền tố dài nhất
+        PathTrie<String> globalPathMap = new PathTrie<>();
+        // Path phân tích 1 lần cho cả lần lập kế hoạch này (Config, Create, Clean dùng chung), xong thì bỏ
+        PartitionPath.Cache paths = new PartitionPath.Cache();
+
+        // --- VÒNG LẶP XỬ LÝ CHÍNH ---
+        // Chọn tuần tự (giữ thứ tự validData), transform song song, ghép kết quả theo đúng thứ tự đã chọn
+        // -> kết quả giống hệt chạy 1 luồng
+        List<UnifiedSourceDTO> cfgRows = new ArrayList<>();
+        LongSet processedCfgIds = new LongSet(validData.size());
+        for (UnifiedSourceDTO src : validData) {
+            // [QUAN TRỌNG] Nếu Config này đã được Safe (Giữ lại do Table Name hoặc Connection Safe)
+            // Thì KHÔNG ĐƯỢC Insert lại từ Source nữa để tránh trùng lặp.
+            if (safeLists.safeConfigIds().contains(src.cfgId())) continue;
+
+            if (processedCfgIds.contains(src.cfgId())) continue;
+            processedCfgIds.add(src.cfgId());
+            cfgRows.add(src);
+        }
+
+        // 1. Transform Config (song song)
+        List<TargetConfig> newCfgs = parallelMap(cfgRows, src -> DataTransformer.transformConfig(
+                src, connNameMap.getOrDefault(src.connId(), "unknown_conn_" + src.connId()), paths));
+
+        // Bảng đã có lệnh Drop Partition tự sinh ở Target -> dùng lại ID cũ (dòng Create/Clean không đổi giữa các lần chạy),
+        // chỉ bảng mới mới lấy ID từ allocator; ID mới phải lớn hơn cả các ID dùng lại
+        long[] reusedDropIds = reuseDropPartitionIds(snapshot.targetCreates(), newCfgs, safeLists.safeCreateIds(), validData);
+        long dropIdFloor = Math.max(createIdFloor, Arrays.stream(reusedDropIds).max().orElse(0));
+
+        // Ghép kết quả theo thứ tự Config: ID Drop Partition được cấp tuần tự theo vị trí như khi chạy 1 luồng
+        for (int i = 0; i < newCfgs.size(); i++) {
+            TargetConfig newCfg = newCfgs.get(i);
+            if (newCfg == null) continue;
+            insCfg.add(newCfg);
+
+            // 2. Build Global Map for SQL Replacement
+            String oldPathClean = DataTransformer.normalizePathForMap(cfgRows.get(i).locationPath(), paths);
+            String newPathClean = DataTransformer.normalizePathForMap(newCfg.locationPath(), paths);
+            if (!oldPathClean.isEmpty() && !newPathClean.isEmpty()) {
+                globalPathMap.put(oldPathClean, newPathClean);
+            }
+
+            // a. Sinh lệnh Drop Partition (vào bảng Create)
+            // (chỉ cấp ID khi chắc chắn sinh được lệnh)
+            TargetCreate dropCmd = newCfg.tableName() != null
+                    ? DataTransformer.generateDropPartitionCommand(newCfg,
+                            reusedDropIds[i] != 0 ? reusedDropIds[i] : createIds.next(dropIdFloor))
+                    : null;
+            if (dropCmd != null) {
+                insCreate.add(dropCmd);
+            }
+
+            // b. Sinh lệnh Clean Folder (vào bảng Clean), liên kết luôn với lệnh Drop Partition vừa sinh
+            TargetClean cleanCmd = DataTransformer.generateCleanFromConfig(newCfg, dropCmd != null ? dropCmd.id() : null, paths);
+            if (cleanCmd != null) {
+                insClean.add(cleanCmd);
+            }
+        }
+
+        logger.info("   -> Global Path Map: {} entries", globalPathMap.size());
+
+        // --- XỬ LÝ COMMAND & CREATE GỐC TỪ SOURCE ---
+        List<UnifiedSourceDTO> cmdRows = new ArrayList<>();
+        List<UnifiedSourceDTO> createRows = new ArrayList<>();
+        LongSet processedCmdIds = new LongSet(validData.size());
+        LongSet processedCreateIds = new LongSet(validData.size());
+
+        for (UnifiedSourceDTO src : validData) {
+            // COMMAND: Chỉ insert nếu chưa Safe
+            if (!safeLists.safeCommandIds().contains(src.cmdId()) && !processedCmdIds.contains(src.cmdId())) {
+                cmdRows.add(src);
+                processedCmdIds.add(src.cmdId());
+            }
+
+            // CREATE: Chỉ insert nếu chưa Safe
+            if (src.createId() != null && !safeLists.safeCreateIds().contains(src.createId()) && !processedCreateIds.contains(src.createId())) {
+                createRows.add(src);
+                processedCreateIds.add(src.createId());
+            }
+        }
+
+        insCmd.addAll(parallelMap(cmdRows, src -> DataTransformer.transformCommand(src, existingMaskMap.get(src.cmdId()))));
+        for (TargetCreate tc : parallelMap(createRows, src -> DataTransformer.transformCreate(src, globalPathMap, paths))) {
+            if (tc != null && tc.sqlCommand() != null) {
+                insCreate.add(tc);
+            }
+        }
+
+        return new PipelinePlan(safeLists, insCmd, insCfg, insCreate, insClean);
+    }
+
+    /**
+     * ID lệnh Drop Partition tự sinh đang có ở Target cho bảng của từng Config (0 = chưa có / không dùng lại được).
+     * Không dùng lại ID đã thuộc dòng khác sẽ ghi (Create Safe, Create copy từ Source), mỗi ID chỉ dùng cho 1 Config.
+     */
+    private static long[] reuseDropPartitionIds(List<TargetCreate> targetCreates, List<TargetConfig> newCfgs,
+                                                LongSet safeCreateIds, List<UnifiedSourceDTO> validData) {
+        Map<String, Long> existing = new HashMap<>();
+        for (TargetCreate c : targetCreates) {
+            if (c.id() != null && DataTransformer.isGeneratedDropPartition(c)) existing.putIfAbsent(c.description(), c.id());
+        }
+        LongSet taken = new LongSet(safeCreateIds);
+        for (UnifiedSourceDTO src : validData) {
+            if (src.createId() != null) taken.add(src.createId());
+        }
+        long[] ids = new long[newCfgs.size()];
+        for (int i = 0; i < ids.length; i++) {
+            TargetConfig cfg = newCfgs.get(i);
+            Long id = cfg != null && cfg.tableName() != null ? existing.get(cfg.tableName()) : null;
+            if (id != null && !taken.contains(id)) {
+                ids[i] = id;
+                taken.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Áp dụng fn cho từng phần tử, giữ nguyên thứ tự (phần tử null được giữ);
+     * danh sách đủ lớn thì chạy song song trên ForkJoinPool chung (fn chỉ được đọc trạng thái dùng chung)
+     */
+    private static <T, R> List<R> parallelMap(List<T> items, Function<T, R> fn) {
+        Stream<T> stream = items.size() >= PARALLEL_THRESHOLD ? items.parallelStream() : items.stream();
+        return stream.map(fn).toList();
+    }
+
+    /**
+     * Tên Connection lấy từ danh sách D_CONNECTION (tên rỗng -> "unknown_<id>")
+     */
+    static LongObjectMap<String> connectionNames(Collection<TargetConnection> connections) {
+        LongObjectMap<String> names = new LongObjectMap<>(connections.size());
+        for (TargetConnection c : connections) {
+            names.putIfAbsent(c.id(),
+                    (c.connectionName() != null && !c.connectionName().isBlank()) ? c.connectionName() : "unknown_" + c.id());
+        }
+        return names;
+    }
+
+    /**
+     * D_CONNECTION sau bước đồng bộ Connection, tính trong bộ nhớ (dùng khi không có DB):
+     * các dòng Fix được giữ (dòng Safe được chuẩn hóa tên/driver) + các dòng ghi từ Source
+     */
+    static List<TargetConnection> connectionsAfterSync(ConnectionAnalysisResult result, List<TargetConnection> targetRaw,
+                                                       CredentialCodec codec) {
+        Map<Long, TargetConnection> after = new LinkedHashMap<>();
+        for (TargetConnection t : targetRaw) {
+            if (!result.fixIds().contains(t.id())) continue;
+            after.put(t.id(), result.safeIds().contains(t.id()) ? DataTransformer.transformConnection(t, t, codec) : t);
+        }
+        for (TargetConnection c : result.toInsert()) after.put(c.id(), c);
+        return new ArrayList<>(after.values());
+    }
+}
@@ -0,0 +1,90 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.core.RecordCodec;
+import com.viettel.sync.model.source.SourceConfig;
+import com.viettel.sync.model.source.UnifiedSourceDTO;
+import com.viettel.sync.model.target.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lưu / đọc SyncSnapshot ra 1 file nhị phân (nén GZIP) để chạy "plan" offline, không cần DB.
+ * File chứa nguyên dữ liệu các bảng cấu hình (kể cả thông tin đăng nhập đã mã hóa) -> bảo quản như dữ liệu production.
+ */
+final class SnapshotStore {
+    private static final String MAGIC = "DATASYNC-SNAPSHOT";
+    private static final int VERSION = 2;
+
+    /** Thông tin đi kèm snapshot */
+    record Header(String sourceSchema, String targetSchema, long createdAt) {}
+
+    record Loaded(Header header, SyncSnapshot snapshot) {}
+
+    private SnapshotStore() {}
+
+    static void write(Path file, Header header, SyncSnapshot s) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16)))) {
+            RecordCodec.writeString(out, MAGIC);
+            out.writeInt(VERSION);
+            RecordCodec.writeString(out, header.sourceSchema());
+            RecordCodec.writeString(out, header.targetSchema());
+            out.writeLong(header.createdAt());
+
+            RecordCodec.writeList(out, TargetTimeParam.class, s.sourceTimeParams());
+            RecordCodec.writeStrings(out, new ArrayList<>(s.targetTimeParamNames()));
+            RecordCodec.writeList(out, TargetConnection.class, s.sourceConnections());
+            RecordCodec.writeList(out, TargetConnection.class, s.targetConnections());
+            RecordCodec.writeList(out, SourceConfig.class, s.sourceConfigs());
+            RecordCodec.writeList(out, UnifiedSourceDTO.class, s.pipelineData());
+            RecordCodec.writeList(out, TargetCommand.class, s.targetCommands());
+            RecordCodec.writeList(out, TargetConfig.class, s.targetConfigs());
+            RecordCodec.writeList(out, TargetCreate.class, s.targetCreates());
+            RecordCodec.writeList(out, TargetClean.class, s.targetCleans());
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Loaded read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16)))) {
+            if (!MAGIC.equals(RecordCodec.readString(in))) {
+                throw new IOException("File " + file + " không phải snapshot của tool đồng bộ");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Snapshot phiên bản " + version + " không được hỗ trợ (cần " + VERSION + ")");
+            }
+            Header header = new Header(RecordCodec.readString(in), RecordCodec.readString(in), in.readLong());
+
+            List<TargetTimeParam> sourceTimeParams = RecordCodec.readList(in, TargetTimeParam.class);
+            List<String> targetTimeParamNames = RecordCodec.readStrings(in);
+            List<TargetConnection> sourceConnections = RecordCodec.readList(in, TargetConnection.class);
+            List<TargetConnection> targetConnections = RecordCodec.readList(in, TargetConnection.class);
+            List<SourceConfig> sourceConfigs = RecordCodec.readList(in, SourceConfig.class);
+            List<UnifiedSourceDTO> pipelineData = RecordCodec.readList(in, UnifiedSourceDTO.class);
+            List<TargetCommand> targetCommands = RecordCodec.readList(in, TargetCommand.class);
+            List<TargetConfig> targetConfigs = RecordCodec.readList(in, TargetConfig.class);
+            List<TargetCreate> targetCreates = RecordCodec.readList(in, TargetCreate.class);
+            List<TargetClean> targetCleans = RecordCodec.readList(in, TargetClean.class);
+
+            return new Loaded(header, new SyncSnapshot(
+                    sourceTimeParams, new HashSet<>(targetTimeParamNames),
+                    sourceConnections, targetConnections,
+                    sourceConfigs, pipelineData,
+                    targetCommands, targetConfigs, targetCreates, targetCleans));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.core.Digest;
+import com.viettel.sync.core.LongObjectMap;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.core.RowMappers;
+import com.viettel.sync.model.source.SourceConfig;
+import com.viettel.sync.model.target.*;
+import com.viettel.sync.service.SyncState.Checkpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Nhật ký checkpoint (app.checkpoint=true): mỗi bước commit riêng rồi ghi lại digest đầu vào và digest
+ * nội dung Target ngay sau commit. Lần chạy sau bỏ qua 1 bước khi cả 2 digest khớp với dữ liệu vừa đọc:
+ * đầu vào không đổi và Target vẫn đúng như lúc bước đó commit.
+ * Digest lệch chỉ làm bước đó chạy lại (các bước đều ghi lại được nhiều lần), không bao giờ bỏ qua nhầm.
+ */
+final class SyncCheckpoint {
+    private static final Logger logger = LoggerFactory.getLogger(SyncCheckpoint.class);
+
+    static final String TIME_PARAM = "time-param";
+    static final String CONNECTION = "connection";
+    static final String PIPELINE = "pipeline";
+
+    // INSERT_DATE luôn là thời điểm ghi -> không thuộc nội dung
+    private static final Set<String> IGNORE = Set.of("INSERT_DATE");
+
+    private final SyncState state;
+    private final boolean reuse;
+
+    /**
+     * @param reuse: false khi chạy --full (chạy lại mọi bước, vẫn ghi checkpoint mới)
+     */
+    SyncCheckpoint(SyncState state, boolean reuse) {
+        this.state = state;
+        this.reuse = reuse;
+    }
+
+    /**
+     * @return true nếu bước đã commit ở lần chạy trước với cùng đầu vào và Target chưa bị đổi kể từ đó
+     */
+    boolean done(String stage, String inputDigest, String currentOutputDigest) {
+        if (!reuse) return false;
+        Checkpoint cp = state.checkpoint(stage);
+        return cp != null && cp.inputDigest().equals(inputDigest) && cp.outputDigest().equals(currentOutputDigest);
+    }
+
+    /**
+     * Commit bước rồi ghi checkpoint. Không ghi được file chỉ làm lần sau chạy lại bước này.
+     */
+    void commit(Connection conn, String stage, String inputDigest, String outputDigest) throws SQLException {
+        conn.commit();
+        state.putCheckpoint(stage, new Checkpoint(inputDigest, outputDigest));
+        try {
+            state.save();
+            logger.info("   -> [CHECKPOINT] Đã commit bước {}", stage);
+        } catch (IOException e) {
+            logger.warn("⚠️ Không ghi được checkpoint bước {}", stage, e);
+        }
+    }
+
+    /** Fix Connection ID lưu cùng checkpoint bước Connection (bước Pipeline cần khi bước Connection được bỏ qua) */
+    LongSet fixConnectionIds() {
+        return state.fixConnectionIds();
+    }
+
+    void putFixConnectionIds(LongSet ids) {
+        state.putFixConnectionIds(ids);
+    }
+
+    // --- Digest từng bước ---
+
+    static String timeParamInput(SyncSnapshot s) {
+        return new Digest().addRows(RowMappers.of(TargetTimeParam.class), s.sourceTimeParams(), IGNORE).hex();
+    }
+
+    static String timeParamOutput(Collection<String> targetNames) {
+        return new Digest().addUnordered(targetNames).hex();
+    }
+
+    static String connectionInput(SyncSnapshot s) {
+        return new Digest().addRows(RowMappers.of(TargetConnection.class), s.sourceConnections(), IGNORE).hex();
+    }
+
+    static String connectionOutput(Collection<TargetConnection> targetRows) {
+        return new Digest().addRows(RowMappers.of(TargetConnection.class), targetRows, IGNORE).hex();
+    }
+
+    /**
+     * Đầu vào Pipeline gồm cả kết quả bước Connection (Fix ID, tên Connection)
+     */
+    static String pipelineInput(SyncSnapshot s, LongSet fixConnectionIds, LongObjectMap<String> connNames) {
+        List<String> names = new ArrayList<>(connNames.size());
+        connNames.forEach((id, name) -> names.add(id + "=" + name));
+        return new Digest()
+                .addRecords(s.pipelineData())
+                .addRows(RowMappers.of(SourceConfig.class), s.sourceConfigs(), IGNORE)
+                .addUnordered(fixConnectionIds)
+                .addUnordered(names)
+                .hex();
+    }
+
+    static String pipelineOutput(List<TargetCommand> commands, List<TargetConfig> configs,
+                                 List<TargetCreate> creates, List<TargetClean> cleans) {
+        return new Digest()
+                .addRows(RowMappers.of(TargetCommand.class), commands, IGNORE)
+                .addRows(RowMappers.of(TargetConfig.class), configs, IGNORE)
+                .addRows(RowMappers.of(TargetCreate.class), creates, IGNORE)
+                .addRows(RowMappers.of(TargetClean.class), cleans, IGNORE)
+                .hex();
+    }
+}
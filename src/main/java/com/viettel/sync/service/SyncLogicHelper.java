@@ -1,6 +1,8 @@
 package com.viettel.sync.service;
 
-import com.viettel.sync.core.SecurityUtils;
+import com.viettel.sync.core.CredentialCodec;
+import com.viettel.sync.core.LongObjectMap;
+import com.viettel.sync.core.LongSet;
 import com.viettel.sync.model.source.SourceConfig;
 import com.viettel.sync.model.source.UnifiedSourceDTO;
 import com.viettel.sync.model.target.*;
@@ -8,32 +10,49 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class SyncLogicHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(SyncLogicHelper.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
 
     public record ConnectionAnalysisResult(
             List<TargetConnection> toInsert,
-            Set<Long> fixIds,
-            Set<Long> safeIds,
+            LongSet fixIds,
+            LongSet safeIds,
             List<String> logs
     ) {}
 
     public record PipelineSafeResult(
-            Set<Long> safeCommandIds,
-            Set<Long> safeConfigIds,
-            Set<Long> safeCreateIds
+            LongSet safeCommandIds,
+            LongSet safeConfigIds,
+            LongSet safeCreateIds
     ) {}
 
     public static ConnectionAnalysisResult analyzeConnections(
             List<TargetConnection> sourceList,
             List<TargetConnection> targetList
-    ) {
+    ) throws InterruptedException {
+        return analyzeConnections(sourceList, targetList, CredentialCodec.UNCACHED);
+    }
+
+    /**
+     * @param codec: codec của lần chạy; user/pass của toàn bộ Source được giải mã trước song song,
+     *               các bước so khớp / transform phía sau chỉ còn tra cache
+     */
+    public static ConnectionAnalysisResult analyzeConnections(
+            List<TargetConnection> sourceList,
+            List<TargetConnection> targetList,
+            CredentialCodec codec
+    ) throws InterruptedException {
+        codec.warmUp(sourceList.stream().map(TargetConnection::userName).collect(Collectors.toList()),
+                sourceList.stream().map(TargetConnection::pass).collect(Collectors.toList()));
+
         List<TargetConnection> toInsert = new ArrayList<>();
-        Set<Long> fixIds = new HashSet<>();
-        Set<Long> safeIds = new HashSet<>();
+        LongSet fixIds = new LongSet();
+        LongSet safeIds = new LongSet();
         List<String> logs = new ArrayList<>();
 
         // Phân loại Source
@@ -55,12 +74,12 @@ public class SyncLogicHelper {
         // =====================================================================
         // PHẦN A: LOGIC JDBC
         // =====================================================================
-        Map<Long, TargetConnection> targetJdbcMap = tgtJdbc.stream()
-                .collect(Collectors.toMap(TargetConnection::id, i -> i));
+        LongObjectMap<TargetConnection> targetJdbcMap = new LongObjectMap<>(tgtJdbc.size());
+        tgtJdbc.forEach(c -> targetJdbcMap.put(c.id(), c));
 
         for (TargetConnection src : srcJdbc) {
             TargetConnection tgt = targetJdbcMap.get(src.id());
-            TargetConnection readyToInsert = DataTransformer.transformConnection(src, tgt);
+            TargetConnection readyToInsert = DataTransformer.transformConnection(src, tgt, codec);
 
             // Case 1: NEW
             if (tgt == null) {
@@ -81,39 +100,26 @@ public class SyncLogicHelper {
         }
 
         // SAFE check JDBC
-        Set<Long> sourceJdbcIds = srcJdbc.stream().map(TargetConnection::id).collect(Collectors.toSet());
+        // Index Source theo (URL chuẩn hóa, user giải mã, pass mã hóa lại) dựng 1 lần:
+        // mỗi Target chỉ còn 1 lần tra cứu thay vì quét (giải mã/mã hóa + regex) toàn bộ Source
+        Map<JdbcKey, Long> sourceJdbcIndex = new HashMap<>(srcJdbc.size() * 2);
+        for (TargetConnection src : srcJdbc) {
+            sourceJdbcIndex.putIfAbsent(sourceJdbcKey(src, codec), src.id()); // giữ Source đầu tiên như thứ tự quét cũ
+        }
+
+        LongSet sourceJdbcIds = new LongSet(srcJdbc.size());
+        srcJdbc.forEach(c -> sourceJdbcIds.add(c.id()));
         for (TargetConnection tgt : tgtJdbc) {
             if (!sourceJdbcIds.contains(tgt.id())) {
                 String tgtUrl = tgt.url() != null ? tgt.url().trim() : null;
-                boolean notSafe = srcJdbc.stream().anyMatch(src -> {
-                    String srcUrl = src.url() != null ? src.url().trim() : null;
-                    if (!Objects.equals(normalizeJdbcUrl(srcUrl), normalizeJdbcUrl(tgtUrl))) return false;
-                    if (!Objects.equals(SecurityUtils.decrypt(src.userName()), tgt.userName())) return false;
-                    if (!Objects.equals(SecurityUtils.encrypt(SecurityUtils.decrypt(src.pass())), tgt.pass())) return false;
-                    return true;
-                });
-
-                if (!notSafe) {
+                Long srcId = sourceJdbcIndex.get(new JdbcKey(normalizeJdbcUrl(tgtUrl), tgt.userName(), tgt.pass()));
+
+                if (srcId == null) {
                     safeIds.add(tgt.id());
                     fixIds.add(tgt.id());
                 } else {
-                    Optional<Long> srcIdOpt = srcJdbc.stream()
-                            .filter(src -> {
-                                String srcUrl = src.url() != null ? src.url().trim() : null;
-                                if (!Objects.equals(normalizeJdbcUrl(srcUrl), normalizeJdbcUrl(tgtUrl))) return false;
-                                if (!Objects.equals(SecurityUtils.decrypt(src.userName()), tgt.userName())) return false;
-                                if (!Objects.equals(SecurityUtils.encrypt(SecurityUtils.decrypt(src.pass())), tgt.pass())) return false;
-                                return true;
-                            })
-                            .map(TargetConnection::id)
-                            .findFirst();
-
-                    if (srcIdOpt.isPresent()) {
-                        logger.info("ℹ️ DUPLICATE JDBC Target ID " + tgt.id() + "URL " + tgt.url() + "user " + tgt.userName() +
-                                " (same as Source ID " + srcIdOpt.get() + ")");
-                    } else {
-                        logger.info("ℹ️ DUPLICATE JDBC ID " + tgt.id() + " (same url/user/pass as source)");
-                    }
+                    logger.info("ℹ️ DUPLICATE JDBC Target ID " + tgt.id() + "URL " + tgt.url() + "user " + tgt.userName() +
+                            " (same as Source ID " + srcId + ")");
                 }
             }
         }
@@ -124,7 +130,7 @@ public class SyncLogicHelper {
         // B1. Tạo danh sách Key của Source FTP để tra cứu
         Set<String> sourceFtpKeys = new HashSet<>();
         for (TargetConnection src : srcFtp) {
-            sourceFtpKeys.add(getFtpKey(src));
+            sourceFtpKeys.add(getFtpKey(src, codec));
         }
 
         // B2. Xử lý Target FTP trước
@@ -137,7 +143,7 @@ public class SyncLogicHelper {
 
         // B3. Xử lý Source FTP sau
         for (TargetConnection src : srcFtp) {
-            TargetConnection readyToInsert = DataTransformer.transformConnection(src, null);
+            TargetConnection readyToInsert = DataTransformer.transformConnection(src, null, codec);
 
             if (fixIds.contains(src.id())) {
                 logs.add(String.format("❌ FTP SKIP INSERT ID %d: ID này trùng với ID đang được giữ lại (Fixed/Safe). User=%s, pass=%s",
@@ -157,21 +163,26 @@ public class SyncLogicHelper {
      * 2. Safe theo Table Name (Bảng chỉ có ở Target -> Pipeline giữ lại).
      */
     public static PipelineSafeResult computePipelineSafeLists(
-            Set<Long> fixConnectionIds,
+            LongSet fixConnectionIds,
             List<TargetCommand> allCommands,
             List<TargetConfig> allConfigs,
             List<SourceConfig> AllSourceData
     ) {
-        // --- BƯỚC 1: Safe theo Connection ---
-        Set<Long> safeCmdIds = allCommands.stream()
-                .filter(c -> fixConnectionIds.contains(c.idConnection()))
-                .map(TargetCommand::id)
-                .collect(Collectors.toSet());
+        return computePipelineSafeLists(fixConnectionIds, PipelineGraph.of(allCommands, allConfigs), allConfigs, AllSourceData);
+    }
 
-        Set<Long> safeCfgIds = allConfigs.stream()
-                .filter(c -> safeCmdIds.contains(c.idCommand()))
-                .map(TargetConfig::id)
-                .collect(Collectors.toSet());
+    /**
+     * @param graph: đồ thị dựng từ đúng allConfigs + Command Target tương ứng
+     */
+    public static PipelineSafeResult computePipelineSafeLists(
+            LongSet fixConnectionIds,
+            PipelineGraph graph,
+            List<TargetConfig> allConfigs,
+            List<SourceConfig> AllSourceData
+    ) {
+        // --- BƯỚC 1: Safe theo Connection (bao đóng Connection -> Command -> Config) ---
+        LongSet safeCmdIds = graph.commandsOf(fixConnectionIds);
+        LongSet safeCfgIds = graph.configsOf(safeCmdIds);
 
         // --- BƯỚC 2: Safe theo Table Name
         // Lọc ra các Config chưa được Safe ở bước 1
@@ -204,22 +215,27 @@ public class SyncLogicHelper {
 
         // --- BƯỚC 3: Safe Create IDs ---
         // Create được giữ nếu Config trỏ tới nó được giữ
-        Set<Long> safeCreateIds = allConfigs.stream()
-                .filter(c -> safeCfgIds.contains(c.id()))
-                .filter(c -> c.idCommandCreate() != null)
-                .map(TargetConfig::idCommandCreate)
-                .collect(Collectors.toSet());
+        LongSet safeCreateIds = graph.createsOf(safeCfgIds);
 
         return new PipelineSafeResult(safeCmdIds, safeCfgIds, safeCreateIds);
     }
 
     // --- Helper Methods ---
 
+    // Khóa so khớp JDBC Source/Target (dạng lưu ở Target: user rõ, pass đã mã hóa)
+    private record JdbcKey(String url, String user, String pass) {}
+
+    private static JdbcKey sourceJdbcKey(TargetConnection src, CredentialCodec codec) {
+        String srcUrl = src.url() != null ? src.url().trim() : null;
+        return new JdbcKey(normalizeJdbcUrl(srcUrl), codec.decrypt(src.userName()), codec.reencrypt(src.pass()));
+    }
+
     // Tạo key định danh FTP: URL|User
-    private static String getFtpKey(TargetConnection c) {
+    private static String getFtpKey(TargetConnection c, CredentialCodec codec) {
         if (c == null) return "null|null";
         String u = c.url() != null ? c.url().trim() : "null";
-        String n = SecurityUtils.decrypt(c.userName()) != null ? SecurityUtils.decrypt(c.userName()).trim() : "null";
+        String user = codec.decrypt(c.userName());
+        String n = user != null ? user.trim() : "null";
         return u + "|" + n;
     }
 
@@ -233,7 +249,7 @@ public class SyncLogicHelper {
     // Chuẩn hóa JDBC URL để so sánh
     private static String normalizeJdbcUrl(String url) {
         if (url == null) return null;
-        return url.trim().replaceAll("\\s+", "").toLowerCase();
+        return WHITESPACE.matcher(url.trim()).replaceAll("").toLowerCase();
     }
 
     // Chuẩn hóa Table Name: Bỏ schema, lowercase
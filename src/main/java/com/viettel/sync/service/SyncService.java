@@ -1,67 +1,435 @@
 package com.viettel.sync.service;
 
+import com.viettel.sync.config.AppConfigLoader;
 import com.viettel.sync.config.DatabaseUtils;
+import com.viettel.sync.config.IdAllocatorOptions;
+import com.viettel.sync.config.SyncOptions;
+import com.viettel.sync.config.SyncPair;
+import com.viettel.sync.config.SyncScope;
+import com.viettel.sync.config.SyncOptions.BulkLoadMode;
+import com.viettel.sync.config.SyncOptions.WriteMode;
+import com.viettel.sync.core.CredentialCodec;
+import com.viettel.sync.core.GenericRepository;
+import com.viettel.sync.core.IdAllocator;
+import com.viettel.sync.core.LongObjectMap;
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.core.ParallelReads;
+import com.viettel.sync.core.RowDiff;
+import com.viettel.sync.core.RowMappers;
 import com.viettel.sync.model.source.SourceConfig;
 import com.viettel.sync.model.source.UnifiedSourceDTO;
 import com.viettel.sync.model.target.*;
+import com.viettel.sync.repository.IdBlockRepository;
 import com.viettel.sync.repository.SourceRepository;
 import com.viettel.sync.repository.TargetRepository;
+import com.viettel.sync.repository.WatermarkRepository;
+import com.viettel.sync.repository.WatermarkRepository.TableWatermark;
 import com.viettel.sync.service.SyncLogicHelper.ConnectionAnalysisResult;
+import com.viettel.sync.service.PipelinePlanner.PipelinePlan;
 import com.viettel.sync.service.SyncLogicHelper.PipelineSafeResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SyncService {
     private static final Logger logger = LoggerFactory.getLogger(SyncService.class);
-    private final SourceRepository sourceRepo = new SourceRepository();
-    private final TargetRepository targetRepo = new TargetRepository();
+    private final SyncPair pair;
+    private final SourceRepository sourceRepo;
+    private final TargetRepository targetRepo;
+    private final SyncOptions syncOptions = AppConfigLoader.getSyncOptions();
+    private final IdAllocatorOptions idOptions = AppConfigLoader.getIdAllocatorOptions();
+    // Cấp ID cho lệnh Drop Partition của bảng mới (bảng đã có lệnh ở Target thì PipelinePlanner dùng lại ID cũ).
+    // Luôn giữ khối qua bảng cấp phát -> các lần chạy chồng nhau (cron + --daemon, theo phạm vi + toàn bộ) không cấp trùng ID;
+    // giữ qua các lần chạy (daemon) để dùng tiếp phần còn lại của khối
+    private final IdAllocator tableCreateIds;
+    // null nếu không bật ghi Pipeline theo chunk
+    private final ChunkedPipelineWriter chunkWriter;
+    // Ghi Pipeline khi đồng bộ theo phạm vi (dùng chung file nhật ký bù trừ với chunkWriter)
+    private final ChunkedPipelineWriter scopedWriter;
+
+    // INSERT_DATE luôn là thời điểm chạy nên không dùng để xét dòng có thay đổi hay không
+    private static final Set<String> MERGE_COMPARE_IGNORE = Set.of("INSERT_DATE");
+
+    private final WatermarkRepository watermarkRepo = new WatermarkRepository();
+
+    // Các bảng đầu vào của từng bước (dùng cho chế độ INCREMENTAL)
+    private static final String TIME_PARAM_TABLE = "D_TIME_PARAM_CONFIG";
+    private static final List<String> CONNECTION_SOURCE_TABLES = List.of("D_CONNECTION");
+    private static final List<String> CONNECTION_TARGET_TABLES = List.of("D_CONNECTION");
+    private static final List<String> PIPELINE_SOURCE_TABLES = List.of(
+            "D_DB_2_HDFS_CONFIG", "D_DB_2_HDFS_COMMAND", "D_DB_2_HDFS_COMMAND_CREATE", "D_DB_2_HDFS_HISTORY");
+    private static final List<String> PIPELINE_TARGET_TABLES = List.of(
+            "D_CONNECTION", "D_DB_2_HDFS_CONFIG", "D_DB_2_HDFS_COMMAND", "D_DB_2_HDFS_COMMAND_CREATE");
+    private static final List<String> ALL_SOURCE_TABLES = List.of(
+            TIME_PARAM_TABLE, "D_CONNECTION", "D_DB_2_HDFS_CONFIG", "D_DB_2_HDFS_COMMAND",
+            "D_DB_2_HDFS_COMMAND_CREATE", "D_DB_2_HDFS_HISTORY");
+    private static final List<String> ALL_TARGET_TABLES = PIPELINE_TARGET_TABLES;
+
+    public SyncService() {
+        this(AppConfigLoader.getDefaultSyncPair());
+    }
+
+    public SyncService(SyncPair pair) {
+        this.pair = pair;
+        this.sourceRepo = new SourceRepository(pair.db().sourceSchema());
+        this.targetRepo = new TargetRepository(pair.db().targetSchema());
+        this.tableCreateIds = newTableAllocator("D_DB_2_HDFS_COMMAND_CREATE");
+        Path undoJournal = Path.of(syncOptions.stateFile()).resolveSibling("pipeline-undo-" + pair.name() + ".bin");
+        this.chunkWriter = syncOptions.pipelineChunkConnections() > 0
+                ? new ChunkedPipelineWriter(targetRepo, undoJournal, syncOptions.pipelineChunkConnections())
+                : null;
+        this.scopedWriter = chunkWriter != null ? chunkWriter : new ChunkedPipelineWriter(targetRepo, undoJournal, Integer.MAX_VALUE);
+    }
+
+    public SyncPair getPair() { return pair; }
 
     public void runSync() {
+        runSync(false);
+    }
+
+    /**
+     * @param forceFull: bỏ qua chế độ INCREMENTAL, đồng bộ lại toàn bộ (vẫn ghi lại watermark cho lần sau)
+     * @return true nếu đã commit, false nếu lỗi và đã rollback
+     */
+    public boolean runSync(boolean forceFull) {
         Connection conn = null;
+        // Các bước đã commit riêng trước khi ghi Pipeline theo chunk (lỗi sau đó không rollback được các bước này)
+        String committedSteps = null;
         try {
-            conn = DatabaseUtils.getConnection();
+            conn = DatabaseUtils.getConnection(pair.db());
             conn.setAutoCommit(false); // Bắt đầu Transaction
             logger.info("========== BẮT ĐẦU ĐỒNG BỘ (SAFE TABLE CHECK VERSION) ==========");
 
+            // Lần trước dừng giữa lúc ghi Pipeline theo chunk -> hoàn tác trước khi đọc watermark / dữ liệu
+            scopedWriter.recover(conn);
+
+            // 0. Watermark (chỉ khi bật INCREMENTAL): đọc TRƯỚC khi đọc dữ liệu để thay đổi xảy ra
+            // trong lúc chạy vẫn bị phát hiện ở lần sau
+            SyncState state = null;
+            Map<String, TableWatermark> marks = Map.of();
+            boolean incremental = false;
+            if (syncOptions.incremental() || syncOptions.checkpoint()) {
+                state = SyncState.load(syncOptions.stateFile(), pair.stateKey());
+            }
+            if (syncOptions.incremental()) {
+                marks = readWatermarks(conn);
+                incremental = !forceFull;
+                logger.info("Chế độ {}", incremental ? "INCREMENTAL" : "FULL (--full)");
+            }
+            // Checkpoint: mỗi bước commit riêng; --full chạy lại mọi bước
+            SyncCheckpoint checkpoint = syncOptions.checkpoint() ? new SyncCheckpoint(state, !forceFull) : null;
+
+            // Xác định trước các bước cần chạy để pha đọc chỉ đọc những gì cần
+            // TimeParam chỉ thêm mới -> incremental chỉ cần đọc dòng Source đổi sau lần trước
+            TableWatermark timeMark = incremental ? state.watermark(sourceRepo.getSourceSchema(), TIME_PARAM_TABLE) : null;
+            LongSet fixConnectionIds = null;
+            if (incremental && unchanged(state, marks, CONNECTION_SOURCE_TABLES, CONNECTION_TARGET_TABLES)) {
+                fixConnectionIds = state.fixConnectionIds();
+            }
+            boolean connectionsSynced = fixConnectionIds == null;
+            boolean pipelineSynced = !incremental || connectionsSynced
+                    || !unchanged(state, marks, PIPELINE_SOURCE_TABLES, PIPELINE_TARGET_TABLES);
+
+            // PHA ĐỌC: các bảng độc lập đọc song song trên kết nối read-only riêng, xong mới bắt đầu ghi
+            SyncSnapshot snapshot = readSnapshot(timeMark != null ? timeMark.maxScn() : null, connectionsSynced, pipelineSynced,
+                    isDiff() || checkpoint != null || chunkWriter != null);
+
             // 1. Đồng bộ TimeParam
-            syncTimeParam(conn);
+            syncTimeParam(conn, snapshot, checkpoint);
 
             // 2. Đồng bộ Connections
-            Set<Long> fixConnectionIds = syncConnections(conn);
+            if (connectionsSynced) {
+                fixConnectionIds = syncConnections(conn, snapshot, checkpoint);
+            } else {
+                logger.info("--- 2. SYNC CONNECTIONS --- Bỏ qua: không có thay đổi kể từ lần chạy trước");
+            }
 
             // 3. Đồng bộ Pipeline (Command, Config, Create, Clean + Auto Gen Logic)
             // Truyền fixConnectionIds để xác định các Pipeline thuộc Connection an toàn
-            syncPipeline(conn, fixConnectionIds);
+            if (pipelineSynced) {
+                if (chunkWriter != null) {
+                    // Ghi theo chunk: các bước trước commit luôn, mỗi chunk sau đó là 1 transaction riêng
+                    conn.commit();
+                    committedSteps = connectionsSynced ? "TimeParam, Connection" : "TimeParam";
+                }
+                syncPipeline(conn, snapshot, fixConnectionIds, checkpoint);
+            } else {
+                logger.info("--- 3. SYNC PIPELINE --- Bỏ qua: không có thay đổi kể từ lần chạy trước");
+            }
 
             conn.commit();
             logger.info("✅ ĐỒNG BỘ THÀNH CÔNG TOÀN BỘ!");
+
+            if (syncOptions.incremental()) saveState(conn, state, marks, fixConnectionIds);
+            return true;
         } catch (Exception e) {
-            logger.error("❌ LỖI NGHIÊM TRỌNG, ROLLBACK!", e);
+            if (committedSteps != null) {
+                logger.error("❌ LỖI NGHIÊM TRỌNG khi ghi Pipeline theo chunk! Các chunk đã commit được hoàn tác theo nhật ký bù trừ; "
+                        + "{} đã commit trước đó, KHÔNG bị rollback", committedSteps, e);
+            } else {
+                logger.error(syncOptions.checkpoint()
+                        ? "❌ LỖI NGHIÊM TRỌNG, ROLLBACK bước đang chạy (các bước đã checkpoint được giữ, lần sau chạy tiếp)!"
+                        : "❌ LỖI NGHIÊM TRỌNG, ROLLBACK!", e);
+            }
             try {
                 if (conn != null) conn.rollback();
             } catch (Exception ex) {
                 logger.error("Lỗi khi rollback", ex);
             }
+            return false;
         } finally {
             DatabaseUtils.closeConnection(conn);
         }
     }
 
-    private void syncTimeParam(Connection conn) throws Exception {
-        logger.info("--- 1. SYNC TIME PARAM ---");
-        List<TargetTimeParam> sourceList = sourceRepo.getAllTimeParams(conn);
-        List<TargetTimeParam> targetList = targetRepo.getAllTargetTimeParams(conn);
+    /**
+     * Đồng bộ 1 phần đồ thị Pipeline (--connections / --configs): chỉ đọc các dòng trong phạm vi (điều kiện lọc nằm trong
+     * câu truy vấn), bỏ qua TimeParam, INCREMENTAL và checkpoint. Connection của các Config được chọn cũng được đồng bộ.
+     * Pipeline luôn ghi theo diff qua ChunkedPipelineWriter (có nhật ký bù trừ), không truncate Clean, không đụng dòng ngoài phạm vi.
+     * Command/Create không còn dùng trong phạm vi nhưng có thể đang được Config ngoài phạm vi dùng thì giữ lại,
+     * lần đồng bộ toàn bộ sau sẽ dọn.
+     * @return true nếu đã commit, false nếu lỗi và đã rollback
+     */
+    public boolean runScopedSync(SyncScope scope) {
+        Connection conn = null;
+        boolean connectionsCommitted = false;
+        try {
+            conn = DatabaseUtils.getConnection(pair.db());
+            conn.setAutoCommit(false);
+            logger.info("========== BẮT ĐẦU ĐỒNG BỘ THEO PHẠM VI ({}) ==========", scope);
+            scopedWriter.recover(conn);
+
+            LongSet connectionIds = new LongSet(scope.connectionIds());
+            if (!scope.configIds().isEmpty()) {
+                connectionIds.addAll(sourceRepo.connectionIdsOfConfigs(conn, scope.configIds()));
+                connectionIds.addAll(targetRepo.connectionIdsOfConfigs(conn, scope.configIds()));
+            }
+            SyncSnapshot snapshot = readScopedSnapshot(scope, connectionIds);
+
+            LongSet fixConnectionIds = syncConnections(conn, snapshot, null);
+            conn.commit();
+            connectionsCommitted = true;
+
+            logger.info("--- 3. SYNC PIPELINE (phạm vi {}) ---", scope);
+            LongObjectMap<String> connNameMap;
+            try (Stream<TargetConnection> currentTargetConns = targetRepo.streamTargetConnections(conn)) {
+                connNameMap = PipelinePlanner.connectionNames(currentTargetConns.toList());
+            }
+            // Snapshot chỉ có 1 phần bảng Create -> ID tự sinh phải lớn hơn MAX(ID) cả 2 phía
+            long createIdFloor = Math.max(sourceRepo.getMaxCreateId(conn), targetRepo.getMaxCreateId(conn));
+            PipelinePlan plan = PipelinePlanner.plan(snapshot, fixConnectionIds, connNameMap, tableCreateIds, createIdFloor);
+            scopedWriter.write(conn, withoutShared(snapshot, plan, scope), plan);
+
+            logger.info("✅ ĐỒNG BỘ THEO PHẠM VI THÀNH CÔNG!");
+            return true;
+        } catch (Exception e) {
+            logger.error(connectionsCommitted
+                    ? "❌ LỖI KHI GHI PIPELINE THEO PHẠM VI! Các chunk đã commit được hoàn tác theo nhật ký bù trừ; Connection đã commit trước đó, KHÔNG bị rollback"
+                    : "❌ LỖI KHI ĐỒNG BỘ THEO PHẠM VI, ROLLBACK!", e);
+            try {
+                if (conn != null) conn.rollback();
+            } catch (Exception ex) {
+                logger.error("Lỗi khi rollback", ex);
+            }
+            return false;
+        } finally {
+            DatabaseUtils.closeConnection(conn);
+        }
+    }
 
-        Set<String> targetNames = targetList.stream()
-                .map(t -> t.name().trim().toLowerCase())
-                .collect(Collectors.toSet());
+    /**
+     * Bỏ khỏi phần Target đem so (-> không bị xóa) các dòng không còn dùng trong phạm vi nhưng có thể thuộc phần ngoài:
+     * Command không thuộc Connection được chọn, Create có Config tham chiếu (lệnh Drop Partition tự sinh chỉ có Clean trỏ tới
+     * nên vẫn được thay)
+     */
+    private static SyncSnapshot withoutShared(SyncSnapshot s, PipelinePlan plan, SyncScope scope) {
+        LongSet wantedCmds = new LongSet(plan.safeLists().safeCommandIds());
+        plan.insCmd().forEach(c -> wantedCmds.add(c.id()));
+        LongSet wantedCreates = new LongSet(plan.safeLists().safeCreateIds());
+        plan.insCreate().forEach(c -> wantedCreates.add(c.id()));
+        LongSet referencedCreates = new LongSet();
+        s.targetConfigs().forEach(c -> {
+            if (c.idCommandCreate() != null) referencedCreates.add(c.idCommandCreate());
+        });
+
+        List<TargetCommand> cmds = s.targetCommands().stream()
+                .filter(c -> wantedCmds.contains(c.id()) || scope.connectionIds().contains(c.idConnection()))
+                .collect(Collectors.toList());
+        List<TargetCreate> creates = s.targetCreates().stream()
+                .filter(c -> wantedCreates.contains(c.id()) || !referencedCreates.contains(c.id()))
+                .collect(Collectors.toList());
+        return new SyncSnapshot(s.sourceTimeParams(), s.targetTimeParamNames(), s.sourceConnections(), s.targetConnections(),
+                s.sourceConfigs(), s.pipelineData(), cmds, s.targetConfigs(), creates, s.targetCleans());
+    }
+
+    // --- Watermark cho chế độ INCREMENTAL ---
+
+    private Map<String, TableWatermark> readWatermarks(Connection conn) throws Exception {
+        Map<String, TableWatermark> marks = new HashMap<>();
+        String src = sourceRepo.getSourceSchema();
+        String tgt = targetRepo.getTargetSchema();
+        for (String table : ALL_SOURCE_TABLES) marks.put(src + "." + table, watermarkRepo.read(conn, src, table));
+        for (String table : ALL_TARGET_TABLES) marks.put(tgt + "." + table, watermarkRepo.read(conn, tgt, table));
+        return marks;
+    }
+
+    private boolean unchanged(SyncState state, Map<String, TableWatermark> marks, List<String> sourceTables, List<String> targetTables) {
+        String src = sourceRepo.getSourceSchema();
+        String tgt = targetRepo.getTargetSchema();
+        for (String table : sourceTables) {
+            if (!marks.get(src + "." + table).equals(state.watermark(src, table))) return false;
+        }
+        for (String table : targetTables) {
+            if (!marks.get(tgt + "." + table).equals(state.watermark(tgt, table))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Source: lưu watermark đọc trước khi chạy. Target: đọc lại sau commit (đã gồm phần vừa ghi).
+     */
+    private void saveState(Connection conn, SyncState state, Map<String, TableWatermark> marks, LongSet fixConnectionIds) {
+        try {
+            String src = sourceRepo.getSourceSchema();
+            String tgt = targetRepo.getTargetSchema();
+            for (String table : ALL_SOURCE_TABLES) state.putWatermark(src, table, marks.get(src + "." + table));
+            for (String table : ALL_TARGET_TABLES) state.putWatermark(tgt, table, watermarkRepo.read(conn, tgt, table));
+            state.putFixConnectionIds(fixConnectionIds);
+            state.save();
+        } catch (Exception e) {
+            // Không lưu được state chỉ làm lần sau chạy FULL, không ảnh hưởng dữ liệu đã commit
+            logger.warn("⚠️ Không lưu được trạng thái đồng bộ vào {}", syncOptions.stateFile(), e);
+        }
+    }
+
+    // --- Pha đọc ---
+
+    /**
+     * Đọc song song toàn bộ dữ liệu cần cho các bước sẽ chạy.
+     * Các bảng Target đọc ở đây không bị bước trước ghi vào (Connection chỉ ghi D_CONNECTION,
+     * phần tên Connection cho Pipeline vẫn đọc trên kết nối ghi sau bước 2).
+     * @param timeSinceScn: chỉ đọc các TimeParam Source thay đổi sau SCN này, null để đọc toàn bộ
+     * @param cleans: đọc cả D_CLEAN_FOLDER (chế độ DIFF / checkpoint / chunk / snapshot)
+     */
+    private SyncSnapshot readSnapshot(Long timeSinceScn, boolean connections, boolean pipeline, boolean cleans) throws Exception {
+        long start = System.nanoTime();
+        try (ParallelReads reads = new ParallelReads(syncOptions.readConnections(),
+                () -> DatabaseUtils.getReadOnlyConnection(pair.db()))) {
+            Future<List<TargetTimeParam>> srcTime = reads.submit("Source TimeParam", c -> {
+                try (Stream<TargetTimeParam> rows = sourceRepo.streamTimeParams(c, timeSinceScn)) {
+                    return rows.collect(Collectors.toList());
+                }
+            });
+            // Chỉ cần tên phía Target -> đọc dạng Stream, không giữ cả bản ghi
+            Future<Set<String>> tgtTimeNames = reads.submit("Target TimeParam", c -> {
+                try (Stream<TargetTimeParam> rows = targetRepo.streamTargetTimeParams(c)) {
+                    return rows.map(t -> t.name().trim().toLowerCase()).collect(Collectors.toSet());
+                }
+            });
+
+            Future<List<TargetConnection>> srcConns = connections ? reads.submit("Source Connection", sourceRepo::getAllConnections) : null;
+            Future<List<TargetConnection>> tgtConns = connections ? reads.submit("Target Connection", targetRepo::getAllTargetConnections) : null;
+
+            // Truy vấn Pipeline (join + History) thường lâu nhất -> submit trước trong nhóm
+            Future<List<UnifiedSourceDTO>> pipelineData = pipeline ? reads.submit("Source Pipeline", sourceRepo::getValidPipelineData) : null;
+            Future<List<SourceConfig>> srcConfigs = pipeline ? reads.submit("Source Config", sourceRepo::getAllSourceConfig) : null;
+            Future<List<TargetCommand>> tgtCmds = pipeline ? reads.submit("Target Command", targetRepo::getAllTargetCommands) : null;
+            Future<List<TargetConfig>> tgtConfigs = pipeline ? reads.submit("Target Config", targetRepo::getAllTargetConfigs) : null;
+            Future<List<TargetCreate>> tgtCreates = pipeline ? reads.submit("Target Create", targetRepo::getAllTargetCreates) : null;
+            Future<List<TargetClean>> tgtCleans = pipeline && cleans ? reads.submit("Target Clean", targetRepo::getAllTargetCleans) : null;
+
+            SyncSnapshot snapshot = new SyncSnapshot(
+                    get(srcTime), get(tgtTimeNames),
+                    get(srcConns), get(tgtConns),
+                    get(srcConfigs), get(pipelineData),
+                    get(tgtCmds), get(tgtConfigs), get(tgtCreates), get(tgtCleans));
+            logger.info("--- 0. ĐỌC DỮ LIỆU --- Xong trong {} ms ({} kết nối đọc)",
+                    (System.nanoTime() - start) / 1_000_000, syncOptions.readConnections());
+            return snapshot;
+        }
+    }
+
+    /**
+     * Pha đọc khi đồng bộ theo phạm vi: chỉ các dòng thuộc phạm vi, riêng tên bảng Source (2 cột) vẫn đọc hết
+     * để kiểm tra bảng chỉ có ở Target
+     * @param connectionIds: Connection được chọn + Connection sở hữu các Config được chọn
+     */
+    private SyncSnapshot readScopedSnapshot(SyncScope scope, LongSet connectionIds) throws Exception {
+        long start = System.nanoTime();
+        try (ParallelReads reads = new ParallelReads(syncOptions.readConnections(),
+                () -> DatabaseUtils.getReadOnlyConnection(pair.db()))) {
+            Future<List<TargetConnection>> srcConns = reads.submit("Source Connection", c -> sourceRepo.getConnections(c, connectionIds));
+            Future<List<TargetConnection>> tgtConns = reads.submit("Target Connection", c -> targetRepo.getTargetConnections(c, connectionIds));
+            Future<List<UnifiedSourceDTO>> pipelineData = reads.submit("Source Pipeline", c -> sourceRepo.getValidPipelineData(c, scope));
+            Future<List<SourceConfig>> srcConfigs = reads.submit("Source Config", sourceRepo::getAllSourceConfig);
+            Future<List<TargetCommand>> tgtCmds = reads.submit("Target Command", c -> targetRepo.getTargetCommands(c, scope));
+            Future<List<TargetConfig>> tgtConfigs = reads.submit("Target Config", c -> targetRepo.getTargetConfigs(c, scope));
+            Future<List<TargetCreate>> tgtCreates = reads.submit("Target Create", c -> targetRepo.getTargetCreates(c, scope));
+            Future<List<TargetClean>> tgtCleans = reads.submit("Target Clean", c -> targetRepo.getTargetCleans(c, scope));
+
+            SyncSnapshot snapshot = new SyncSnapshot(
+                    List.of(), Set.of(),
+                    get(srcConns), get(tgtConns),
+                    get(srcConfigs), get(pipelineData),
+                    get(tgtCmds), get(tgtConfigs), get(tgtCreates), get(tgtCleans));
+            logger.info("--- 0. ĐỌC DỮ LIỆU (phạm vi) --- Connection={}, Pipeline={}, Config Target={} trong {} ms",
+                    snapshot.sourceConnections().size(), snapshot.pipelineData().size(), snapshot.targetConfigs().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Lệnh "snapshot": đọc toàn bộ các bảng mà luồng đồng bộ dùng (Source + Target) ra file nhị phân, không ghi DB
+     */
+    public void captureSnapshot(Path file) throws Exception {
+        SyncSnapshot snapshot = readSnapshot(null, true, true, true);
+        SnapshotStore.write(file, new SnapshotStore.Header(sourceRepo.getSourceSchema(), targetRepo.getTargetSchema(),
+                System.currentTimeMillis()), snapshot);
+        logger.info("📦 Đã lưu snapshot {} -> {} vào {} ({} KB)", sourceRepo.getSourceSchema(), targetRepo.getTargetSchema(),
+                file, Files.size(file) / 1024);
+    }
+
+    // Giữ khối trên kết nối riêng, commit ngay: không giữ khóa dòng cấp phát suốt transaction đồng bộ
+    private IdAllocator newTableAllocator(String name) {
+        IdBlockRepository blocks = new IdBlockRepository(targetRepo.getTargetSchema(), idOptions.table());
+        return new IdAllocator((floor, size) -> {
+            Connection c = DatabaseUtils.getConnection(pair.db());
+            try {
+                long start = blocks.reserve(c, name, floor, size);
+                logger.info("   -> [ID] Giữ khối {} ID [{}, {}) cho {}", size, start, start + size, name);
+                return start;
+            } finally {
+                DatabaseUtils.closeConnection(c);
+            }
+        }, idOptions.blockSize());
+    }
 
-        List<TargetTimeParam> toInsert = sourceList.stream()
+    private static <T> T get(Future<T> future) throws Exception {
+        return future == null ? null : ParallelReads.await(future);
+    }
+
+    /**
+     * @param checkpoint: null nếu không bật checkpoint (cả lần chạy là 1 transaction)
+     */
+    private void syncTimeParam(Connection conn, SyncSnapshot snapshot, SyncCheckpoint checkpoint) throws Exception {
+        logger.info("--- 1. SYNC TIME PARAM ---");
+        Set<String> targetNames = snapshot.targetTimeParamNames();
+        String input = checkpoint != null ? SyncCheckpoint.timeParamInput(snapshot) : null;
+        if (checkpoint != null && checkpoint.done(SyncCheckpoint.TIME_PARAM, input, SyncCheckpoint.timeParamOutput(targetNames))) {
+            logger.info("   -> Bỏ qua: đã commit ở lần chạy trước (checkpoint)");
+            return;
+        }
+
+        List<TargetTimeParam> toInsert = snapshot.sourceTimeParams().stream()
                 .filter(item -> !targetNames.contains(item.name().trim().toLowerCase()))
                 .collect(Collectors.toList());
 
@@ -69,26 +437,91 @@ public class SyncService {
             targetRepo.timeRepo.insertBatch(conn, targetRepo.getTargetSchema(), toInsert);
             logger.info("   -> [INSERT] Đã thêm {} TimeParam.", toInsert.size());
         }
+
+        if (checkpoint != null) {
+            Set<String> after = new HashSet<>(targetNames);
+            toInsert.forEach(t -> after.add(t.name().trim().toLowerCase()));
+            checkpoint.commit(conn, SyncCheckpoint.TIME_PARAM, input, SyncCheckpoint.timeParamOutput(after));
+        }
     }
 
-    private Set<Long> syncConnections(Connection conn) throws Exception {
+    private LongSet syncConnections(Connection conn, SyncSnapshot snapshot, SyncCheckpoint checkpoint) throws Exception {
         logger.info("--- 2. SYNC CONNECTIONS ---");
 
-        List<TargetConnection> sourceRaw = sourceRepo.getAllConnections(conn);
-        List<TargetConnection> targetRaw = targetRepo.getAllTargetConnections(conn);
+        List<TargetConnection> sourceRaw = snapshot.sourceConnections();
+        List<TargetConnection> targetRaw = snapshot.targetConnections();
+
+        String input = checkpoint != null ? SyncCheckpoint.connectionInput(snapshot) : null;
+        if (checkpoint != null && checkpoint.fixConnectionIds() != null
+                && checkpoint.done(SyncCheckpoint.CONNECTION, input, SyncCheckpoint.connectionOutput(targetRaw))) {
+            logger.info("   -> Bỏ qua: đã commit ở lần chạy trước (checkpoint)");
+            return checkpoint.fixConnectionIds();
+        }
 
         // Gọi Helper tính toán logic (Pure Logic)
-        ConnectionAnalysisResult result = SyncLogicHelper.analyzeConnections(sourceRaw, targetRaw);
+        // Codec riêng cho lần chạy: user/pass giải mã 1 lần, dùng lại ở bước phân tích, D3 và checkpoint
+        CredentialCodec codec = AppConfigLoader.getCredentialCodec();
+        ConnectionAnalysisResult result = SyncLogicHelper.analyzeConnections(sourceRaw, targetRaw, codec);
 
         if (!result.logs().isEmpty()) {
             logger.warn("⚠️ PHÁT HIỆN {} XUNG ĐỘT/VẤN ĐỀ:", result.logs().size());
             result.logs().forEach(logger::warn);
         }
 
+        if (isDiff()) {
+            // D1+D2 (DIFF): chỉ so với phần Target không thuộc Fix
+            List<TargetConnection> current = targetRaw.stream()
+                    .filter(t -> !result.fixIds().contains(t.id()))
+                    .collect(Collectors.toList());
+            // Không dùng direct-path (-1): bước Pipeline đọc lại D_CONNECTION trong cùng transaction (ORA-12838)
+            writeDiff(targetRepo.connectionRepo, conn, TargetConnection.class, result.toInsert(), current, -1);
+        } else {
+            writeConnections(conn, result, targetRaw);
+        }
+
+        // D3. UPDATE INFO SAFE ID: Cập nhật thông tin Connection Name/Driver cho các ID Safe (giữ ID, update info)
+        // Bỏ qua các dòng đã đúng sẵn để không ghi lại dữ liệu không đổi
+        for (TargetConnection tgt : targetRaw) {
+            if (!result.safeIds().contains(tgt.id())) continue;
+            TargetConnection normalized = DataTransformer.transformConnection(tgt, tgt, codec);
+            if (Objects.equals(normalized.connectionName(), tgt.connectionName())
+                    && Objects.equals(normalized.driverName(), tgt.driverName())) {
+                continue;
+            }
+            try {
+                targetRepo.connectionRepo.updateConnectionInfo(
+                        conn,
+                        targetRepo.getTargetSchema(),
+                        TargetConnection.class,
+                        tgt.id(),
+                        normalized.connectionName(),
+                        normalized.driverName()
+                );
+            } catch (Exception e) {
+                logger.error("Lỗi update Safe ID {}", tgt.id(), e);
+            }
+        }
+        logger.info("Danh sách ID thuộc nhóm safe (chỉ có ở target) {}", result.safeIds());
+        logger.info("Danh sách ID thuộc nhóm fix {}", result.fixIds());
+
+        if (checkpoint != null) {
+            checkpoint.putFixConnectionIds(result.fixIds());
+            checkpoint.commit(conn, SyncCheckpoint.CONNECTION, input,
+                    SyncCheckpoint.connectionOutput(PipelinePlanner.connectionsAfterSync(result, targetRaw, codec)));
+        }
+        return result.fixIds();
+    }
+
+    // D1+D2 cho chế độ REPLACE/MERGE
+    private void writeConnections(Connection conn, ConnectionAnalysisResult result, List<TargetConnection> targetRaw) {
         // D1. DELETE: Xóa các Connection không nằm trong danh sách Fix (Fix = Safe hoặc Target Only được giữ lại)
+        // Chế độ MERGE: các ID sắp được ghi lại từ Source không cần xóa
+        LongSet upsertIds = new LongSet();
+        if (isMerge()) result.toInsert().forEach(c -> upsertIds.add(c.id()));
         List<Long> idsToDelete = targetRaw.stream()
                 .map(TargetConnection::id)
                 .filter(id -> !result.fixIds().contains(id))
+                .filter(id -> !upsertIds.contains(id))
                 .collect(Collectors.toList());
 
         if (!idsToDelete.isEmpty()) {
@@ -98,218 +531,237 @@ public class SyncService {
 
         // D2. INSERT/UPDATE: Ghi các Connection mới hoặc ghi đè từ Source
         if (!result.toInsert().isEmpty()) {
-            targetRepo.connectionRepo.insertBatch(conn, targetRepo.getTargetSchema(), result.toInsert());
+            writeRows(targetRepo.connectionRepo, conn, result.toInsert());
             logger.info("   -> [INSERT/UPDATE] Đã ghi {} connection.", result.toInsert().size());
         }
+    }
 
-        // D3. UPDATE INFO SAFE ID: Cập nhật thông tin Connection Name/Driver cho các ID Safe (giữ ID, update info)
-        for (Long safeId : result.safeIds()) {
-            targetRaw.stream().filter(t -> t.id().equals(safeId)).findFirst().ifPresent(tgt -> {
-                TargetConnection normalized = DataTransformer.transformConnection(tgt, tgt);
-                try {
-                    targetRepo.connectionRepo.updateConnectionInfo(
-                            conn,
-                            targetRepo.getTargetSchema(),
-                            TargetConnection.class,
-                            safeId,
-                            normalized.connectionName(),
-                            normalized.driverName()
-                    );
-                } catch (Exception e) {
-                    logger.error("Lỗi update Safe ID {}", safeId, e);
-                }
-            });
+    private void syncPipeline(Connection conn, SyncSnapshot snapshot, LongSet fixConnectionIds,
+                              SyncCheckpoint checkpoint) throws Exception {
+        logger.info("--- 3. SYNC PIPELINE (Auto Drop & Clean Logic + Check Table Safe) ---");
+
+        // Tên Connection đọc trên kết nối ghi: phải thấy kết quả bước 2 (chưa commit)
+        LongObjectMap<String> connNameMap;
+        try (Stream<TargetConnection> currentTargetConns = targetRepo.streamTargetConnections(conn)) {
+            connNameMap = PipelinePlanner.connectionNames(currentTargetConns.toList());
         }
-        logger.info("Danh sách ID thuộc nhóm safe (chỉ có ở target) {}", result.safeIds());
-        logger.info("Danh sách ID thuộc nhóm fix {}", result.fixIds());
 
-        return result.fixIds();
-    }
+        String input = checkpoint != null ? SyncCheckpoint.pipelineInput(snapshot, fixConnectionIds, connNameMap) : null;
+        if (checkpoint != null && checkpoint.done(SyncCheckpoint.PIPELINE, input, SyncCheckpoint.pipelineOutput(
+                snapshot.targetCommands(), snapshot.targetConfigs(), snapshot.targetCreates(), snapshot.targetCleans()))) {
+            logger.info("   -> Bỏ qua: đã commit ở lần chạy trước (checkpoint)");
+            return;
+        }
 
-    private void syncPipeline(Connection conn, Set<Long> fixConnectionIds) throws Exception {
-        logger.info("--- 3. SYNC PIPELINE (Auto Drop & Clean Logic + Check Table Safe) ---");
+        // A-D. Safe List + Transform (tính thuần trong bộ nhớ)
+        PipelinePlan plan = PipelinePlanner.plan(snapshot, fixConnectionIds, connNameMap, tableCreateIds);
+        PipelineSafeResult safeLists = plan.safeLists();
+        List<TargetCommand> insCmd = plan.insCmd();
+        List<TargetConfig> insCfg = plan.insCfg();
+        List<TargetCreate> insCreate = plan.insCreate();
+        List<TargetClean> insClean = plan.insClean();
+
+        // Clean đã mang sẵn ID_COMMAND_CREATE của lệnh Drop Partition sinh cùng lúc -> không còn bước UPDATE liên kết sau khi ghi
+        if (chunkWriter != null) {
+            // runSync đã commit các bước trước
+            chunkWriter.write(conn, snapshot, plan);
+        } else if (isDiff()) {
+            writePipelineDiff(conn, snapshot, safeLists, insCmd, insCfg, insCreate, insClean);
+        } else {
+            writePipeline(conn, snapshot, safeLists, insCmd, insCfg, insCreate, insClean);
+        }
 
-        // A. Lấy dữ liệu Source (để dùng cho logic check Safe Table Name)
-        List<SourceConfig> allConfigData = sourceRepo.getAllSourceConfig(conn);
-        List<UnifiedSourceDTO> validData = sourceRepo.getValidPipelineData(conn);
+        if (checkpoint != null) {
+            // Target sau bước này = các dòng Safe giữ nguyên + các dòng vừa ghi
+            checkpoint.commit(conn, SyncCheckpoint.PIPELINE, input, SyncCheckpoint.pipelineOutput(
+                    concat(keepRows(snapshot.targetCommands(), safeLists.safeCommandIds(), TargetCommand::id), insCmd),
+                    concat(keepRows(snapshot.targetConfigs(), safeLists.safeConfigIds(), TargetConfig::id), insCfg),
+                    concat(keepRows(snapshot.targetCreates(), safeLists.safeCreateIds(), TargetCreate::id), insCreate),
+                    insClean));
+        }
+    }
 
-        // B. Lấy dữ liệu Target hiện tại
-        List<TargetCommand> allCmds = targetRepo.getAllTargetCommands(conn);
-        List<TargetConfig> allConfigs = targetRepo.getAllTargetConfigs(conn);
-        List<TargetCreate> allCreates = targetRepo.getAllTargetCreates(conn);
+    private static <T> List<T> keepRows(List<T> rows, LongSet ids, Function<T, Long> idFn) {
+        return rows.stream().filter(r -> ids.contains(idFn.apply(r))).collect(Collectors.toList());
+    }
 
-        // C. Tính toán Safe List (Truyền thêm validData vào để check Table Name)
-        PipelineSafeResult safeLists = SyncLogicHelper.computePipelineSafeLists(
-                fixConnectionIds, allCmds, allConfigs, allConfigData
-        );
+    private static <T> List<T> concat(List<T> a, List<T> b) {
+        List<T> all = new ArrayList<>(a);
+        all.addAll(b);
+        return all;
+    }
 
-        logger.info("   -> Safe Items: \n ID COMMAND {} = {} \n ID CONFIG {} ={}, \n ID COMMAND CREATE {} ={}",
-                safeLists.safeCommandIds().size(), safeLists.safeCommandIds(), safeLists.safeConfigIds().size(),
-                safeLists.safeConfigIds(), safeLists.safeCreateIds().size(), safeLists.safeCreateIds());
+    // E+F cho chế độ REPLACE/MERGE
+    private void writePipeline(Connection conn, SyncSnapshot snapshot, PipelineSafeResult safeLists,
+                               List<TargetCommand> insCmd, List<TargetConfig> insCfg,
+                               List<TargetCreate> insCreate, List<TargetClean> insClean) {
+        String targetSchema = targetRepo.getTargetSchema();
+        List<TargetCommand> allCmds = snapshot.targetCommands();
+        List<TargetConfig> allConfigs = snapshot.targetConfigs();
+        List<TargetCreate> allCreates = snapshot.targetCreates();
 
-        // D. Xóa dữ liệu cũ (Trừ Safe List)
-        targetRepo.cleanRepo.truncate(conn, targetRepo.getTargetSchema(), TargetClean.class);
+        // E. Xóa dữ liệu cũ (Trừ Safe List; chế độ MERGE giữ lại cả các ID sắp được ghi lại)
+        targetRepo.cleanRepo.truncate(conn, targetSchema, TargetClean.class);
 
-        List<Long> delCfgIds = filterOut(allConfigs, safeLists.safeConfigIds());
-        if (!delCfgIds.isEmpty()) targetRepo.configRepo.deleteByIds(conn, targetRepo.getTargetSchema(), TargetConfig.class, delCfgIds);
+        LongSet keepCfgIds = keepIds(safeLists.safeConfigIds(), insCfg, TargetConfig::id);
+        List<Long> delCfgIds = filterOut(allConfigs, keepCfgIds);
+        if (!delCfgIds.isEmpty()) targetRepo.configRepo.deleteByIds(conn, targetSchema, TargetConfig.class, delCfgIds);
 
-        List<Long> delCmdIds = filterOutCmd(allCmds, safeLists.safeCommandIds());
-        if (!delCmdIds.isEmpty()) targetRepo.commandRepo.deleteByIds(conn, targetRepo.getTargetSchema(), TargetCommand.class, delCmdIds);
+        LongSet keepCmdIds = keepIds(safeLists.safeCommandIds(), insCmd, TargetCommand::id);
+        List<Long> delCmdIds = filterOutCmd(allCmds, keepCmdIds);
+        if (!delCmdIds.isEmpty()) targetRepo.commandRepo.deleteByIds(conn, targetSchema, TargetCommand.class, delCmdIds);
 
+        LongSet keepCreateIds = keepIds(safeLists.safeCreateIds(), insCreate, TargetCreate::id);
         List<Long> delCreateIds = allCreates.stream()
                 .map(TargetCreate::id)
-                .filter(id -> !safeLists.safeCreateIds().contains(id))
+                .filter(id -> !keepCreateIds.contains(id))
                 .collect(Collectors.toList());
-        if (!delCreateIds.isEmpty()) targetRepo.createRepo.deleteByIds(conn, targetRepo.getTargetSchema(), TargetCreate.class, delCreateIds);
+        if (!delCreateIds.isEmpty()) targetRepo.createRepo.deleteByIds(conn, targetSchema, TargetCreate.class, delCreateIds);
 
-        // E. Chuẩn bị dữ liệu Insert mới (Chỉ insert những cái không nằm trong Safe List)
-        List<TargetConnection> currentTargetConns = targetRepo.getAllTargetConnections(conn);
+        // F. INSERT BATCH (REPLACE: insert; MERGE: upsert theo ID, bỏ qua dòng không đổi)
+        // Bảng rỗng sau bước xóa -> có thể nạp direct-path (Clean luôn rỗng sau truncate)
+        if (!insCmd.isEmpty()) writeRows(targetRepo.commandRepo, conn, insCmd, delCmdIds.size() == allCmds.size());
+        if (!insCfg.isEmpty()) writeRows(targetRepo.configRepo, conn, insCfg, delCfgIds.size() == allConfigs.size());
+        if (!insCreate.isEmpty()) writeRows(targetRepo.createRepo, conn, insCreate, delCreateIds.size() == allCreates.size());
+        if (!insClean.isEmpty()) insertRows(targetRepo.cleanRepo, conn, insClean, true);
 
-        Map<Long, String> connNameMap = currentTargetConns.stream()
-                .collect(Collectors.toMap(
-                        TargetConnection::id,
-                        c -> (c.connectionName() != null && !c.connectionName().isBlank()) ? c.connectionName() : "unknown_" + c.id(),
-                        (existing, replacement) -> existing
-                ));
+        logger.info("   -> [{}] Cmd={}, Cfg={}, Create={}, Clean={}",
+                syncOptions.writeMode(), insCmd.size(), insCfg.size(), insCreate.size(), insClean.size());
+    }
 
-        long nextCreateId = 1;
+    /**
+     * E+F cho chế độ DIFF: so kết quả transform với phần Target không Safe theo hash nội dung,
+     * chỉ ghi các dòng thay đổi. D_CLEAN_FOLDER không có ID -> so cả tập (gồm cả liên kết ID_COMMAND_CREATE),
+     * chỉ ghi lại (DELETE + INSERT, không truncate) khi tập khác đi.
+     */
+    private void writePipelineDiff(Connection conn, SyncSnapshot snapshot, PipelineSafeResult safeLists,
+                                   List<TargetCommand> insCmd, List<TargetConfig> insCfg,
+                                   List<TargetCreate> insCreate, List<TargetClean> insClean) {
         String targetSchema = targetRepo.getTargetSchema();
-        String sourceSchema = sourceRepo.getSourceSchema();
-
-        try (Statement stmt = conn.createStatement()) {
-            String sql1 = "SELECT MAX(ID) FROM " + targetSchema + ".D_DB_2_HDFS_COMMAND_CREATE";
-            String sql2 = "SELECT MAX(ID) FROM " + sourceSchema + ".D_DB_2_HDFS_COMMAND_CREATE";
-
-            long maxId1 = 0;
-            long maxId2 = 0;
-
-            try (java.sql.ResultSet rs1 = stmt.executeQuery(sql1)) {
-                if (rs1.next()) {
-                    maxId1 = rs1.getLong(1);
-                    if (rs1.wasNull()) maxId1 = 0;
-                }
-            }
-
-            try (java.sql.ResultSet rs2 = stmt.executeQuery(sql2)) {
-                if (rs2.next()) {
-                    maxId2 = rs2.getLong(1);
-                    if (rs2.wasNull()) maxId2 = 0;
-                }
-            }
-
-            long maxId = Math.max(maxId1, maxId2);
-            nextCreateId = maxId + 1;
+        List<TargetCommand> allCmds = snapshot.targetCommands();
+        List<TargetConfig> allConfigs = snapshot.targetConfigs();
+        List<TargetCreate> allCreates = snapshot.targetCreates();
+
+        RowDiff.Result<TargetConfig> cfgDiff = RowDiff.diff(RowMappers.of(TargetConfig.class), insCfg,
+                notIn(allConfigs, safeLists.safeConfigIds(), TargetConfig::id), MERGE_COMPARE_IGNORE);
+        RowDiff.Result<TargetCommand> cmdDiff = RowDiff.diff(RowMappers.of(TargetCommand.class), insCmd,
+                notIn(allCmds, safeLists.safeCommandIds(), TargetCommand::id), MERGE_COMPARE_IGNORE);
+        RowDiff.Result<TargetCreate> createDiff = RowDiff.diff(RowMappers.of(TargetCreate.class), insCreate,
+                notIn(allCreates, safeLists.safeCreateIds(), TargetCreate::id), MERGE_COMPARE_IGNORE);
+
+        // E. Xóa (giữ thứ tự Config -> Command -> Create như chế độ REPLACE)
+        deleteDiff(targetRepo.configRepo, conn, TargetConfig.class, cfgDiff);
+        deleteDiff(targetRepo.commandRepo, conn, TargetCommand.class, cmdDiff);
+        deleteDiff(targetRepo.createRepo, conn, TargetCreate.class, createDiff);
+
+        // F. Ghi phần insert/update
+        writeDiffRows(targetRepo.commandRepo, conn, cmdDiff, allCmds.size());
+        writeDiffRows(targetRepo.configRepo, conn, cfgDiff, allConfigs.size());
+        writeDiffRows(targetRepo.createRepo, conn, createDiff, allCreates.size());
+
+        boolean cleanChanged = !RowDiff.sameContent(RowMappers.of(TargetClean.class),
+                insClean, snapshot.targetCleans(), MERGE_COMPARE_IGNORE);
+        if (cleanChanged) {
+            // Không TRUNCATE ở đây: là DDL, Oracle commit ngầm mọi lệnh ghi Pipeline phía trên -> lỗi sau đó không rollback được.
+            // DELETE + INSERT thường giữ cả bước Pipeline trong 1 transaction
+            targetRepo.cleanRepo.deleteAll(conn, targetSchema, TargetClean.class);
+            targetRepo.cleanRepo.insertBatch(conn, targetSchema, insClean);
         }
 
-        List<TargetCommand> insCmd = new ArrayList<>();
-        List<TargetConfig> insCfg = new ArrayList<>();
-        List<TargetCreate> insCreate = new ArrayList<>();
-        List<TargetClean> insClean = new ArrayList<>();
-
-        Map<Long, String> existingMaskMap = allCmds.stream()
-                .collect(Collectors.toMap(TargetCommand::id, c -> c.maskColumn() != null ? c.maskColumn() : "", (k1, k2) -> k1));
-
-        Map<String, String> globalPathMap = new HashMap<>();
-        Set<Long> processedCfgIds = new HashSet<>();
-
-        // --- VÒNG LẶP XỬ LÝ CHÍNH ---
-        for (UnifiedSourceDTO src : validData) {
-            // [QUAN TRỌNG] Nếu Config này đã được Safe (Giữ lại do Table Name hoặc Connection Safe)
-            // Thì KHÔNG ĐƯỢC Insert lại từ Source nữa để tránh trùng lặp.
-            if (safeLists.safeConfigIds().contains(src.cfgId())) continue;
-
-            if (processedCfgIds.contains(src.cfgId())) continue;
-
-            String targetConnName = connNameMap.getOrDefault(src.connId(), "unknown_conn_" + src.connId());
+        logDiff("Cmd", cmdDiff);
+        logDiff("Cfg", cfgDiff);
+        logDiff("Create", createDiff);
+        logger.info("   -> [DIFF] Clean: {}", cleanChanged ? "ghi lại " + insClean.size() + " dòng" : "không đổi");
+    }
 
-            // 1. Transform Config
-            TargetConfig newCfg = DataTransformer.transformConfig(src, targetConnName);
-            if (newCfg == null) continue;
+    // Helpers
+    private boolean isMerge() {
+        return syncOptions.writeMode() == WriteMode.MERGE;
+    }
 
-            insCfg.add(newCfg);
-            processedCfgIds.add(src.cfgId());
+    private boolean isDiff() {
+        return syncOptions.writeMode() == WriteMode.DIFF;
+    }
 
-            // 2. Build Global Map for SQL Replacement
-            String oldPathClean = DataTransformer.normalizePathForMap(src.locationPath());
-            String newPathClean = DataTransformer.normalizePathForMap(newCfg.locationPath());
-            if (!oldPathClean.isEmpty() && !newPathClean.isEmpty()) {
-                globalPathMap.put(oldPathClean, newPathClean);
-            }
+    /**
+     * Diff rồi ghi luôn (delete -> insert -> update) cho bảng có @Id
+     * @param targetRows: tổng số dòng Target hiện có (để biết bảng có rỗng sau khi xóa hay không), -1 nếu không được dùng direct-path
+     */
+    private <T> RowDiff.Result<T> writeDiff(GenericRepository<T> repo, Connection conn, Class<T> clazz,
+                                           List<T> desired, List<T> current, int targetRows) {
+        RowDiff.Result<T> diff = RowDiff.diff(RowMappers.of(clazz), desired, current, MERGE_COMPARE_IGNORE);
+        deleteDiff(repo, conn, clazz, diff);
+        writeDiffRows(repo, conn, diff, targetRows);
+        logDiff(clazz.getSimpleName(), diff);
+        return diff;
+    }
 
-            // a. Sinh lệnh Drop Partition (vào bảng Create)
-            TargetCreate dropCmd = DataTransformer.generateDropPartitionCommand(newCfg, nextCreateId);
-            if (dropCmd != null) {
-                insCreate.add(dropCmd);
-                nextCreateId++;
-            }
+    private <T> void deleteDiff(GenericRepository<T> repo, Connection conn, Class<T> clazz, RowDiff.Result<T> diff) {
+        if (diff.deleteIds().isEmpty()) return;
+        List<Long> ids = diff.deleteIds().stream().map(id -> ((Number) id).longValue()).collect(Collectors.toList());
+        repo.deleteByIds(conn, targetRepo.getTargetSchema(), clazz, ids);
+    }
 
-            // b. Sinh lệnh Clean Folder (vào bảng Clean)
-            TargetClean cleanCmd = DataTransformer.generateCleanFromConfig(newCfg);
-            if (cleanCmd != null) {
-                insClean.add(cleanCmd);
+    /**
+     * @param targetRows: số dòng Target trước khi xóa, -1 nếu không được dùng direct-path
+     */
+    private <T> void writeDiffRows(GenericRepository<T> repo, Connection conn, RowDiff.Result<T> diff, int targetRows) {
+        String schema = targetRepo.getTargetSchema();
+        if (!diff.inserts().isEmpty()) {
+            boolean tableEmpty = targetRows >= 0 && diff.updates().isEmpty() && diff.deleteIds().size() == targetRows;
+            if (tableEmpty && syncOptions.bulkLoadMode() == BulkLoadMode.AUTO) {
+                repo.insertDirectPath(conn, schema, diff.inserts());
+            } else {
+                repo.insertBatch(conn, schema, diff.inserts());
             }
         }
+        // Diff đã lọc sẵn dòng không đổi -> MERGE không cần điều kiện so sánh
+        if (!diff.updates().isEmpty()) repo.upsertBatch(conn, schema, diff.updates());
+    }
 
-        logger.info("   -> Global Path Map: {} entries", globalPathMap.size());
+    private void logDiff(String name, RowDiff.Result<?> diff) {
+        logger.info("   -> [DIFF] {}: +{} ~{} -{} (không đổi {})", name,
+                diff.inserts().size(), diff.updates().size(), diff.deleteIds().size(), diff.unchanged());
+    }
 
-        // --- XỬ LÝ COMMAND & CREATE GỐC TỪ SOURCE ---
-        Set<Long> processedCmdIds = new HashSet<>();
-        Set<Long> processedCreateIds = new HashSet<>();
+    private <T> List<T> notIn(List<T> all, LongSet ids, Function<T, Long> idFn) {
+        return all.stream().filter(r -> !ids.contains(idFn.apply(r))).collect(Collectors.toList());
+    }
 
-        for (UnifiedSourceDTO src : validData) {
-            // COMMAND: Chỉ insert nếu chưa Safe
-            if (!safeLists.safeCommandIds().contains(src.cmdId()) && !processedCmdIds.contains(src.cmdId())) {
-                String oldMask = existingMaskMap.get(src.cmdId());
-                insCmd.add(DataTransformer.transformCommand(src, oldMask));
-                processedCmdIds.add(src.cmdId());
-            }
+    private <T> void writeRows(GenericRepository<T> repo, Connection conn, List<T> rows) {
+        if (isMerge()) repo.upsertBatch(conn, targetRepo.getTargetSchema(), rows, MERGE_COMPARE_IGNORE);
+        else repo.insertBatch(conn, targetRepo.getTargetSchema(), rows);
+    }
 
-            // CREATE: Chỉ insert nếu chưa Safe
-            if (src.createId() != null && !safeLists.safeCreateIds().contains(src.createId()) && !processedCreateIds.contains(src.createId())) {
-                TargetCreate tc = DataTransformer.transformCreate(src, globalPathMap);
-                if (tc != null && tc.sqlCommand() != null) {
-                    insCreate.add(tc);
-                }
-                processedCreateIds.add(src.createId());
-            }
+    // Bảng đã rỗng trước lúc ghi + bật bulk-load -> insert direct-path
+    private <T> void writeRows(GenericRepository<T> repo, Connection conn, List<T> rows, boolean tableEmpty) {
+        if (tableEmpty && syncOptions.bulkLoadMode() == BulkLoadMode.AUTO) {
+            repo.insertDirectPath(conn, targetRepo.getTargetSchema(), rows);
+        } else {
+            writeRows(repo, conn, rows);
         }
+    }
 
-        // F. INSERT BATCH (DB sẽ tự sinh ID cho các bản ghi auto-gen)
-        if (!insCmd.isEmpty()) targetRepo.commandRepo.insertBatch(conn, targetRepo.getTargetSchema(), insCmd);
-        if (!insCfg.isEmpty()) targetRepo.configRepo.insertBatch(conn, targetRepo.getTargetSchema(), insCfg);
-        if (!insCreate.isEmpty()) targetRepo.createRepo.insertBatch(conn, targetRepo.getTargetSchema(), insCreate);
-        if (!insClean.isEmpty()) targetRepo.cleanRepo.insertBatch(conn, targetRepo.getTargetSchema(), insClean);
-
-        logger.info("   -> [INSERT NEW] Cmd={}, Cfg={}, Create={}, Clean={}",
-                insCmd.size(), insCfg.size(), insCreate.size(), insClean.size());
-
-        // G. BƯỚC CẬP NHẬT LIÊN KẾT (MAGIC STEP)
-        // Join bảng Clean với Created qua Description để update ID
-        logger.info("   -> [POST-PROCESS] Linking Auto-Generated Clean & Drop Commands...");
-
-        String sqlUpdateLink =
-                "UPDATE " + targetSchema + ".D_CLEAN_FOLDER clean " +
-                        "SET ID_COMMAND_CREATE = ( " +
-                        "    SELECT cmd.ID " +
-                        "    FROM " + targetSchema + ".D_DB_2_HDFS_COMMAND_CREATE cmd " +
-                        "    WHERE cmd.DESCRIPTION = clean.DESCRIPTION " +
-                        "    AND cmd.SQL_COMMAND LIKE 'ALTER TABLE%' " +
-                        "    FETCH FIRST 1 ROWS ONLY " +
-                        ") " +
-                        "WHERE clean.ID_COMMAND_CREATE IS NULL " +
-                        "AND EXISTS (SELECT 1 FROM " + targetSchema + ".D_DB_2_HDFS_COMMAND_CREATE c WHERE c.DESCRIPTION = clean.DESCRIPTION)";
-
-        try (Statement stmt = conn.createStatement()) {
-            int rows = stmt.executeUpdate(sqlUpdateLink);
-            logger.info("   -> [LINKED] Đã cập nhật liên kết cho {} bản ghi Clean.", rows);
+    // Bảng không có @Id (không MERGE được): chỉ insert thường hoặc direct-path
+    private <T> void insertRows(GenericRepository<T> repo, Connection conn, List<T> rows, boolean tableEmpty) {
+        if (tableEmpty && syncOptions.bulkLoadMode() == BulkLoadMode.AUTO) {
+            repo.insertDirectPath(conn, targetRepo.getTargetSchema(), rows);
+        } else {
+            repo.insertBatch(conn, targetRepo.getTargetSchema(), rows);
         }
     }
 
-    // Helpers
-    private List<Long> filterOut(List<TargetConfig> all, Set<Long> safeIds) {
+    private <T> LongSet keepIds(LongSet safeIds, List<T> rewritten, Function<T, Long> idFn) {
+        if (!isMerge()) return safeIds;
+        LongSet keep = new LongSet(safeIds);
+        rewritten.forEach(r -> keep.add(idFn.apply(r)));
+        return keep;
+    }
+
+    private List<Long> filterOut(List<TargetConfig> all, LongSet safeIds) {
         return all.stream().map(TargetConfig::id).filter(id -> !safeIds.contains(id)).collect(Collectors.toList());
     }
-    private List<Long> filterOutCmd(List<TargetCommand> all, Set<Long> safeIds) {
+    private List<Long> filterOutCmd(List<TargetCommand> all, LongSet safeIds) {
         return all.stream().map(TargetCommand::id).filter(id -> !safeIds.contains(id)).collect(Collectors.toList());
     }
 }
\ No newline at end of file
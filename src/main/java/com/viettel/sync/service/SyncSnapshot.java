@@ -0,0 +1,30 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.model.source.SourceConfig;
+import com.viettel.sync.model.source.UnifiedSourceDTO;
+import com.viettel.sync.model.target.*;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dữ liệu đọc ở pha đọc (song song, trước transaction ghi).
+ * Các trường của bước được bỏ qua (INCREMENTAL) hoặc không cần (VD: targetCleans ngoài chế độ DIFF) là null.
+ */
+record SyncSnapshot(
+        // 1. TimeParam
+        List<TargetTimeParam> sourceTimeParams,
+        Set<String> targetTimeParamNames,
+
+        // 2. Connection
+        List<TargetConnection> sourceConnections,
+        List<TargetConnection> targetConnections,
+
+        // 3. Pipeline
+        List<SourceConfig> sourceConfigs,
+        List<UnifiedSourceDTO> pipelineData,
+        List<TargetCommand> targetCommands,
+        List<TargetConfig> targetConfigs,
+        List<TargetCreate> targetCreates,
+        List<TargetClean> targetCleans
+) {}
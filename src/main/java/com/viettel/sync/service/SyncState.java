@@ -0,0 +1,123 @@
+package com.viettel.sync.service;
+
+import com.viettel.sync.core.LongSet;
+import com.viettel.sync.repository.WatermarkRepository.TableWatermark;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Trạng thái lần đồng bộ thành công gần nhất, lưu ở file properties cục bộ.
+ * Key có tiền tố "<schema nguồn>><schema đích>." để nhiều cặp schema dùng chung 1 file.
+ */
+public class SyncState {
+    private static final Logger logger = LoggerFactory.getLogger(SyncState.class);
+
+    private final Path file;
+    private final String prefix;
+    private final Properties props = new Properties();
+
+    private SyncState(Path file, String prefix) {
+        this.file = file;
+        this.prefix = prefix;
+    }
+
+    // Nhiều cặp schema chạy song song cùng ghi 1 file -> đọc-gộp-ghi tuần tự
+    private static final Object FILE_LOCK = new Object();
+
+    public static SyncState load(String file, String sourceSchema, String targetSchema) {
+        return load(file, sourceSchema + ">" + targetSchema + ".");
+    }
+
+    /**
+     * @param prefix: tiền tố key của cặp schema (xem SyncPair.stateKey())
+     */
+    public static SyncState load(String file, String prefix) {
+        SyncState state = new SyncState(Path.of(file), prefix);
+        synchronized (FILE_LOCK) {
+            try {
+                readInto(state.file, state.props);
+            } catch (IOException e) {
+                logger.warn("⚠️ Không đọc được file trạng thái {}, coi như chạy lần đầu", file, e);
+            }
+        }
+        return state;
+    }
+
+    private static void readInto(Path file, Properties props) throws IOException {
+        if (!Files.exists(file)) return;
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+    }
+
+    public TableWatermark watermark(String schema, String table) {
+        return TableWatermark.decode(props.getProperty(prefix + "wm." + schema + "." + table));
+    }
+
+    public void putWatermark(String schema, String table, TableWatermark wm) {
+        props.setProperty(prefix + "wm." + schema + "." + table, wm.encode());
+    }
+
+    /** Danh sách Fix Connection ID của lần chạy trước, null nếu chưa có */
+    public LongSet fixConnectionIds() {
+        String raw = props.getProperty(prefix + "fix-connection-ids");
+        if (raw == null) return null;
+        LongSet ids = new LongSet();
+        for (String part : raw.split(",")) {
+            if (!part.isBlank()) ids.add(Long.parseLong(part.trim()));
+        }
+        return ids;
+    }
+
+    public void putFixConnectionIds(LongSet ids) {
+        props.setProperty(prefix + "fix-connection-ids",
+                ids.stream().sorted().mapToObj(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    /** Checkpoint của 1 bước đã commit: digest đầu vào + digest nội dung Target ngay sau commit */
+    public record Checkpoint(String inputDigest, String outputDigest) {}
+
+    /** null nếu bước chưa từng commit */
+    public Checkpoint checkpoint(String stage) {
+        String raw = props.getProperty(prefix + "checkpoint." + stage);
+        if (raw == null || !raw.contains(":")) return null;
+        String[] parts = raw.trim().split(":", 2);
+        return new Checkpoint(parts[0], parts[1]);
+    }
+
+    public void putCheckpoint(String stage, Checkpoint checkpoint) {
+        props.setProperty(prefix + "checkpoint." + stage, checkpoint.inputDigest() + ":" + checkpoint.outputDigest());
+    }
+
+    /**
+     * Ghi ra file tạm rồi đổi tên để không bao giờ để lại file ghi dở.
+     * Chỉ ghi đè các key của cặp schema này, giữ nguyên key các cặp khác đã lưu trong lúc chạy.
+     */
+    public void save() throws IOException {
+        synchronized (FILE_LOCK) {
+            Properties merged = new Properties();
+            readInto(file, merged);
+            merged.keySet().removeIf(k -> k.toString().startsWith(prefix));
+            for (String key : props.stringPropertyNames()) {
+                if (key.startsWith(prefix)) merged.setProperty(key, props.getProperty(key));
+            }
+
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                merged.store(out, "datasync state");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}